@@ -0,0 +1,329 @@
+/*
+ * Copyright (C) 2013 readyState Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.readystatesoftware.systembartint;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.Drawable;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout.LayoutParams;
+
+/**
+ * The tint of a single system bar. Records the requested background and alpha
+ * so that they can be applied when the tint is first attached to the window,
+ * and forwards later changes to the rendering backend.
+ */
+abstract class BarTint {
+
+    private final SystemBarTintManager mManager;
+    private int mColor = SystemBarTintManager.DEFAULT_TINT_COLOR;
+    private int mResource;
+    private Drawable mDrawable;
+    private boolean mUseDrawable;
+    private float mAlpha = 1f;
+    private boolean mUseScrim;
+    private int mScrimColor;
+    private int mScrimStyle;
+
+    BarTint(SystemBarTintManager manager) {
+        mManager = manager;
+    }
+
+    // unchanged values are ignored so they cause no invalidation
+
+    void setColor(int color) {
+        boolean invalidated = false;
+        if (mUseDrawable || mResource != 0 || mColor != color) {
+            mColor = color;
+            mResource = 0;
+            mDrawable = null;
+            mUseDrawable = false;
+            mUseScrim = false;
+            if (isAttached()) {
+                onColor(color);
+                invalidated = true;
+            }
+        }
+        mManager.onTintUpdated(invalidated);
+    }
+
+    void setResource(int res) {
+        if (res == 0) {
+            // resource 0 clears the background, which is recorded as a null drawable
+            setDrawable(null);
+            return;
+        }
+        boolean invalidated = false;
+        if (mResource != res) {
+            mResource = res;
+            mDrawable = null;
+            mUseDrawable = false;
+            mUseScrim = false;
+            if (isAttached()) {
+                onResource(res);
+                invalidated = true;
+            }
+        }
+        mManager.onTintUpdated(invalidated);
+    }
+
+    void setDrawable(Drawable drawable) {
+        mUseScrim = false;
+        boolean invalidated = false;
+        if (!mUseDrawable || mDrawable != drawable) {
+            mResource = 0;
+            mDrawable = drawable;
+            mUseDrawable = true;
+            if (isAttached()) {
+                onDrawable(drawable);
+                invalidated = true;
+            }
+        }
+        mManager.onTintUpdated(invalidated);
+    }
+
+    /**
+     * Apply a scrim drawable, recording the color and style it was rendered from so
+     * that it can be rendered again when the bar geometry changes.
+     */
+    void setScrim(int color, int style, Drawable scrim) {
+        setDrawable(scrim);
+        mUseScrim = true;
+        mScrimColor = color;
+        mScrimStyle = style;
+    }
+
+    boolean hasScrim() {
+        return mUseScrim;
+    }
+
+    int getScrimColor() {
+        return mScrimColor;
+    }
+
+    int getScrimStyle() {
+        return mScrimStyle;
+    }
+
+    /**
+     * Get the last color applied to this tint.
+     */
+    int getColor() {
+        return mColor;
+    }
+
+    void setAlpha(float alpha) {
+        boolean invalidated = false;
+        if (mAlpha != alpha) {
+            mAlpha = alpha;
+            if (isAttached()) {
+                onAlpha(alpha);
+                invalidated = true;
+            }
+        }
+        mManager.onTintUpdated(invalidated);
+    }
+
+    /**
+     * Attach the tint to the window, initially hidden, and apply the recorded state.
+     */
+    void attach(LayoutParams params) {
+        onAttach(params);
+        if (mUseDrawable) {
+            onDrawable(mDrawable);
+        } else if (mResource != 0) {
+            onResource(mResource);
+        } else {
+            onColor(mColor);
+        }
+        if (mAlpha != 1f) {
+            onAlpha(mAlpha);
+        }
+    }
+
+    abstract boolean isAttached();
+
+    abstract void setVisible(boolean visible);
+
+    /**
+     * Get the layout parameters of the attached tint, which may be modified in
+     * place followed by a call to {@link #onLayoutParamsChanged()}.
+     */
+    abstract LayoutParams getLayoutParams();
+
+    abstract void onLayoutParamsChanged();
+
+    abstract void onAttach(LayoutParams params);
+
+    abstract void onColor(int color);
+
+    abstract void onResource(int res);
+
+    abstract void onDrawable(Drawable drawable);
+
+    abstract void onAlpha(float alpha);
+
+    /**
+     * Renders the tint with a child view of the window decor.
+     */
+    static class ViewTint extends BarTint {
+
+        private final Context mContext;
+        private final ViewGroup mDecorViewGroup;
+        private View mView;
+        private ColorDrawable mColorDrawable;
+
+        ViewTint(SystemBarTintManager manager, Context context, ViewGroup decorViewGroup) {
+            super(manager);
+            mContext = context;
+            mDecorViewGroup = decorViewGroup;
+        }
+
+        /**
+         * Get the tint view, or null if the tint is not attached.
+         */
+        View getView() {
+            return mView;
+        }
+
+        @Override
+        boolean isAttached() {
+            return mView != null;
+        }
+
+        @Override
+        void setVisible(boolean visible) {
+            mView.setVisibility(visible ? View.VISIBLE : View.GONE);
+        }
+
+        @Override
+        LayoutParams getLayoutParams() {
+            return (LayoutParams) mView.getLayoutParams();
+        }
+
+        @Override
+        void onLayoutParamsChanged() {
+            mView.requestLayout();
+        }
+
+        @Override
+        void onAttach(LayoutParams params) {
+            mView = new View(mContext);
+            mView.setLayoutParams(params);
+            mView.setVisibility(View.GONE);
+            mDecorViewGroup.addView(mView);
+        }
+
+        @SuppressWarnings("deprecation")
+        @TargetApi(11)
+        @Override
+        void onColor(int color) {
+            // reuse our own color drawable so that color changes do not allocate
+            if (mColorDrawable == null) {
+                mColorDrawable = new ColorDrawable(color);
+            } else {
+                mColorDrawable.setColor(color);
+            }
+            if (mView.getBackground() != mColorDrawable) {
+                mView.setBackgroundDrawable(mColorDrawable);
+            }
+        }
+
+        @SuppressWarnings("deprecation")
+        @Override
+        void onResource(int res) {
+            mView.setBackgroundDrawable(res != 0 ? TintDrawableCache.getDrawable(mContext, res) : null);
+        }
+
+        @SuppressWarnings("deprecation")
+        @Override
+        void onDrawable(Drawable drawable) {
+            mView.setBackgroundDrawable(drawable);
+        }
+
+        @TargetApi(11)
+        @Override
+        void onAlpha(float alpha) {
+            mView.setAlpha(alpha);
+        }
+
+    }
+
+    /**
+     * Renders the tint as one layer of a drawable in the window decor overlay.
+     */
+    static class OverlayTint extends BarTint {
+
+        private final TintOverlayDrawable mOverlay;
+        private final int mLayer;
+
+        OverlayTint(SystemBarTintManager manager, TintOverlayDrawable overlay, int layer) {
+            super(manager);
+            mOverlay = overlay;
+            mLayer = layer;
+        }
+
+        @Override
+        boolean isAttached() {
+            return mOverlay.isLayerAttached(mLayer);
+        }
+
+        @Override
+        void setVisible(boolean visible) {
+            mOverlay.setLayerVisible(mLayer, visible);
+        }
+
+        @Override
+        LayoutParams getLayoutParams() {
+            return mOverlay.getLayerParams(mLayer);
+        }
+
+        @Override
+        void onLayoutParamsChanged() {
+            mOverlay.relayoutLayer(mLayer);
+        }
+
+        @Override
+        void onAttach(LayoutParams params) {
+            mOverlay.attachLayer(mLayer, params);
+        }
+
+        @Override
+        void onColor(int color) {
+            mOverlay.setLayerColor(mLayer, color);
+        }
+
+        @Override
+        void onResource(int res) {
+            mOverlay.setLayerResource(mLayer, res);
+        }
+
+        @Override
+        void onDrawable(Drawable drawable) {
+            mOverlay.setLayerDrawable(mLayer, drawable);
+        }
+
+        @Override
+        void onAlpha(float alpha) {
+            mOverlay.setLayerAlpha(mLayer, alpha);
+        }
+
+    }
+
+}
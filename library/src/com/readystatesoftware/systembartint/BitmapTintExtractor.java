@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2013 readyState Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.readystatesoftware.systembartint;
+
+import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.os.Build;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Derives system bar tint colors from the regions of an image that the bars cover.
+ * A small downsampled copy of the pixels is made on the calling thread, so the caller
+ * is free to recycle or reuse the bitmap once it has been passed in. The copy is then
+ * averaged on a background thread and only the resulting colors are posted back to
+ * the main thread. Results are cached by bitmap
+ * generation id, size and covered regions, so a bitmap which has not been modified
+ * is only sampled once. Generation ids require API 12, results are not cached on
+ * earlier platforms.
+ */
+final class BitmapTintExtractor {
+
+    private static final int MAX_ENTRIES = 32;
+    private static final int SAMPLE_SIZE = 48;
+
+    private static final Map<Key, int[]> sCache =
+            new LinkedHashMap<Key, int[]>(MAX_ENTRIES, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, int[]> eldest) {
+                    return size() > MAX_ENTRIES;
+                }
+            };
+
+    private BitmapTintExtractor() {
+    }
+
+    /**
+     * Extract the tint colors of a bitmap which is displayed stretched over the window.
+     * The colors are delivered to {@link SystemBarTintManager#onBitmapTintExtracted}
+     * on the main thread, immediately if they are cached.
+     *
+     * @param statusBarPermille The fraction of the height covered by the status bar.
+     * @param navBarPermille The fraction of the height (or width) covered by the nav bar.
+     * @param navBarAtBottom True if the nav bar is at the bottom, false if it is on the right.
+     */
+    @TargetApi(12)
+    static void extract(SystemBarTintManager manager, int request, Bitmap bitmap, long duration,
+            int statusBarPermille, int navBarPermille, boolean navBarAtBottom) {
+        boolean cacheable = Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB_MR1;
+        Key key = new Key(cacheable ? bitmap.getGenerationId() : 0, bitmap.getWidth(), bitmap.getHeight(),
+                statusBarPermille, navBarPermille, navBarAtBottom, cacheable);
+        if (cacheable) {
+            int[] colors;
+            synchronized (sCache) {
+                colors = sCache.get(key);
+            }
+            if (colors != null) {
+                manager.onBitmapTintExtracted(request, colors[0], colors[1], duration);
+                return;
+            }
+        }
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        float scale = Math.min(1f, (float) SAMPLE_SIZE / Math.max(width, height));
+        int w = Math.max(1, Math.round(width * scale));
+        int h = Math.max(1, Math.round(height * scale));
+        Bitmap sample = (w == width && h == height) ? bitmap : Bitmap.createScaledBitmap(bitmap, w, h, true);
+        int[] pixels = new int[w * h];
+        sample.getPixels(pixels, 0, w, 0, 0, w, h);
+        if (sample != bitmap) {
+            sample.recycle();
+        }
+        TintExecutor.execute(new Task(manager, request, pixels, w, h, duration, key));
+    }
+
+    private static int[] computeColors(int[] pixels, int w, int h, Key key) {
+        int statusRows = Math.max(1, (h * key.mStatusBarPermille + 999) / 1000);
+        int statusColor = average(pixels, w, 0, 0, w, statusRows);
+        int navColor;
+        if (key.mNavBarAtBottom) {
+            int navRows = Math.max(1, (h * key.mNavBarPermille + 999) / 1000);
+            navColor = average(pixels, w, 0, h - navRows, w, h);
+        } else {
+            int navColumns = Math.max(1, (w * key.mNavBarPermille + 999) / 1000);
+            navColor = average(pixels, w, w - navColumns, 0, w, h);
+        }
+        return new int[] {statusColor, navColor};
+    }
+
+    static int average(int[] pixels, int stride, int left, int top, int right, int bottom) {
+        long r = 0;
+        long g = 0;
+        long b = 0;
+        for (int y = top; y < bottom; y++) {
+            int row = y * stride;
+            for (int x = left; x < right; x++) {
+                int pixel = pixels[row + x];
+                r += (pixel >> 16) & 0xff;
+                g += (pixel >> 8) & 0xff;
+                b += pixel & 0xff;
+            }
+        }
+        long count = (long) (right - left) * (bottom - top);
+        return Color.rgb((int) (r / count), (int) (g / count), (int) (b / count));
+    }
+
+    /**
+     * Averages the sampled pixels on the background thread, then delivers the result on the
+     * main thread.
+     */
+    private static final class Task implements Runnable {
+
+        private final SystemBarTintManager mManager;
+        private final int mRequest;
+        private final int[] mPixels;
+        private final int mWidth;
+        private final int mHeight;
+        private final long mDuration;
+        private final Key mKey;
+        private int[] mColors;
+
+        private Task(SystemBarTintManager manager, int request, int[] pixels, int width, int height,
+                long duration, Key key) {
+            mManager = manager;
+            mRequest = request;
+            mPixels = pixels;
+            mWidth = width;
+            mHeight = height;
+            mDuration = duration;
+            mKey = key;
+        }
+
+        @Override
+        public void run() {
+            if (mColors != null) {
+                mManager.onBitmapTintExtracted(mRequest, mColors[0], mColors[1], mDuration);
+                return;
+            }
+            mColors = computeColors(mPixels, mWidth, mHeight, mKey);
+            if (mKey.mCacheable) {
+                synchronized (sCache) {
+                    sCache.put(mKey, mColors);
+                }
+            }
+            TintExecutor.postToMainThread(this);
+        }
+
+    }
+
+    private static final class Key {
+
+        private final int mGenerationId;
+        private final int mWidth;
+        private final int mHeight;
+        private final int mStatusBarPermille;
+        private final int mNavBarPermille;
+        private final boolean mNavBarAtBottom;
+        private final boolean mCacheable;
+
+        private Key(int generationId, int width, int height, int statusBarPermille,
+                int navBarPermille, boolean navBarAtBottom, boolean cacheable) {
+            mGenerationId = generationId;
+            mWidth = width;
+            mHeight = height;
+            mStatusBarPermille = statusBarPermille;
+            mNavBarPermille = navBarPermille;
+            mNavBarAtBottom = navBarAtBottom;
+            mCacheable = cacheable;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return mGenerationId == other.mGenerationId
+                    && mWidth == other.mWidth
+                    && mHeight == other.mHeight
+                    && mStatusBarPermille == other.mStatusBarPermille
+                    && mNavBarPermille == other.mNavBarPermille
+                    && mNavBarAtBottom == other.mNavBarAtBottom;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = mGenerationId;
+            result = 31 * result + mWidth;
+            result = 31 * result + mHeight;
+            result = 31 * result + mStatusBarPermille;
+            result = 31 * result + mNavBarPermille;
+            result = 31 * result + (mNavBarAtBottom ? 1 : 0);
+            return result;
+        }
+
+    }
+
+}
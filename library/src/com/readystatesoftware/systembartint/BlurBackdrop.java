@@ -0,0 +1,349 @@
+/*
+ * Copyright (C) 2013 readyState Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.readystatesoftware.systembartint;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.graphics.drawable.BitmapDrawable;
+import android.os.Build;
+import android.renderscript.Allocation;
+import android.renderscript.Element;
+import android.renderscript.RSRuntimeException;
+import android.renderscript.RenderScript;
+import android.renderscript.ScriptIntrinsicBlur;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import java.util.Arrays;
+
+/**
+ * Renders the system bar tints as a blurred copy of the content beneath them, for a
+ * frosted glass effect. Only the bar-sized strips of the content are drawn, at 1/8
+ * resolution, and blurred with a RenderScript intrinsic on API 17 and above or a
+ * Java stack blur on earlier platforms. The blurred strips are scaled up by the tints,
+ * and the tint alpha still applies.
+ *
+ * The strips are redrawn at most once per frame, and only when the content has been
+ * redrawn and its pixels beneath the bars have changed. Intermediate bitmaps are
+ * reused from a small pool.
+ *
+ * Obtain an instance with {@link SystemBarTintManager#startBlurBackdrop(View)}.
+ */
+public class BlurBackdrop {
+
+    private static final int SCALE_DIVISOR = 8;
+    private static final int MAX_RADIUS = 25;
+
+    private final SystemBarTintManager mManager;
+    private final View mContentView;
+    private final StripCapture mCapture;
+    private final FrameScheduler mScheduler;
+    private final ViewTreeObserver.OnPreDrawListener mPreDrawListener;
+    private final Rect mRegion = new Rect();
+    private final Layer mStatusLayer = new Layer();
+    private final Layer mNavLayer = new Layer();
+    private RenderScriptBlur mRenderScriptBlur;
+    private int[] mWork;
+    private int[] mTemp;
+    private int mRadius = 6;
+    private boolean mStarted = true;
+
+    BlurBackdrop(SystemBarTintManager manager, View contentView) {
+        mManager = manager;
+        mContentView = contentView;
+        mCapture = new StripCapture(contentView);
+        TintBitmapPool.ensureCallbacks(contentView.getContext());
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            createRenderScriptBlur(contentView.getContext().getApplicationContext());
+        }
+        mScheduler = FrameScheduler.create(new FrameScheduler.Callback() {
+            @Override
+            public void doFrame(long frameTimeNanos) {
+                render();
+            }
+        });
+        mPreDrawListener = new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                mScheduler.schedule();
+                return true;
+            }
+        };
+        contentView.getViewTreeObserver().addOnPreDrawListener(mPreDrawListener);
+        mScheduler.schedule();
+    }
+
+    /**
+     * Set the blur radius, measured in pixels of the downsampled strips, so the
+     * effective radius on screen is 8 times larger.
+     *
+     * @param radius The radius, between 1 and 25 (default 6).
+     * @return This backdrop.
+     */
+    public BlurBackdrop setRadius(int radius) {
+        mRadius = Math.max(1, Math.min(MAX_RADIUS, radius));
+        mStatusLayer.mDirty = true;
+        mNavLayer.mDirty = true;
+        mScheduler.schedule();
+        return this;
+    }
+
+    /**
+     * Stop rendering the backdrop. The tints return to their colors and the bitmaps
+     * are released.
+     */
+    public void stop() {
+        if (!mStarted) {
+            return;
+        }
+        mStarted = false;
+        mScheduler.cancel();
+        ViewTreeObserver observer = mContentView.getViewTreeObserver();
+        if (observer.isAlive()) {
+            observer.removeOnPreDrawListener(mPreDrawListener);
+        }
+        if (mStatusLayer.mDrawable != null) {
+            mManager.setStatusBarTintColor(mManager.getStatusBarTintColor());
+        }
+        if (mNavLayer.mDrawable != null) {
+            mManager.setNavigationBarTintColor(mManager.getNavigationBarTintColor());
+        }
+        mStatusLayer.release();
+        mNavLayer.release();
+        if (mRenderScriptBlur != null) {
+            mRenderScriptBlur.destroy();
+            mRenderScriptBlur = null;
+        }
+    }
+
+    /**
+     * Create the RenderScript blur on the background thread, since creating the
+     * context can take tens of milliseconds. Frames rendered until it is ready use
+     * the Java blur.
+     */
+    private void createRenderScriptBlur(final Context context) {
+        TintExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final RenderScriptBlur blur = RenderScriptBlur.create(context);
+                if (blur == null) {
+                    return;
+                }
+                TintExecutor.postToMainThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (mStarted) {
+                            mRenderScriptBlur = blur;
+                        } else {
+                            blur.destroy();
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private void render() {
+        if (!mStarted || mContentView.getWidth() == 0) {
+            return;
+        }
+        SystemBarTintManager.SystemBarConfig config = mManager.getConfig();
+        if (mManager.isStatusBarTintEnabled() && mCapture.getStatusBarRegion(config, mRegion)) {
+            if (render(mStatusLayer, 0)) {
+                mManager.setStatusBarTintDrawable(mStatusLayer.mDrawable);
+                mStatusLayer.releaseRetired();
+            }
+        }
+        if (mManager.isNavBarTintEnabled() && mCapture.getNavBarRegion(config, mRegion)) {
+            if (render(mNavLayer, 1)) {
+                mManager.setNavigationBarTintDrawable(mNavLayer.mDrawable);
+                mNavLayer.releaseRetired();
+            }
+        }
+    }
+
+    /**
+     * Capture and blur the content beneath the current region.
+     *
+     * @return True if the layer has a new drawable which must be set on its tint.
+     */
+    private boolean render(Layer layer, int slot) {
+        int w = Math.max(1, mRegion.width() / SCALE_DIVISOR);
+        int h = Math.max(1, mRegion.height() / SCALE_DIVISOR);
+        boolean resized = layer.prepare(w, h);
+        mCapture.draw(mRegion, layer.mInput);
+        layer.mInput.getPixels(layer.mPixels, 0, w, 0, 0, w, h);
+        if (!resized && !layer.mDirty && Arrays.equals(layer.mPixels, layer.mLastPixels)) {
+            // our own invalidation, or a redraw elsewhere in the content
+            return false;
+        }
+        layer.mDirty = false;
+        int[] swap = layer.mLastPixels;
+        layer.mLastPixels = layer.mPixels;
+        layer.mPixels = swap;
+
+        if (mRenderScriptBlur != null) {
+            try {
+                mRenderScriptBlur.blur(slot, layer.mInput, layer.mOutput, mRadius);
+            } catch (RSRuntimeException e) {
+                // the driver failed after creation, use the Java blur from now on
+                mRenderScriptBlur.destroyQuietly();
+                mRenderScriptBlur = null;
+            }
+        }
+        if (mRenderScriptBlur == null) {
+            int size = w * h;
+            if (mWork == null || mWork.length < size) {
+                mWork = new int[size];
+                mTemp = new int[size];
+            }
+            System.arraycopy(layer.mLastPixels, 0, mWork, 0, size);
+            StackBlur.blur(mWork, mTemp, w, h, mRadius);
+            layer.mOutput.setPixels(mWork, 0, w, 0, 0, w, h);
+        }
+
+        if (resized) {
+            layer.mDrawable = new BitmapDrawable(mContentView.getResources(), layer.mOutput);
+            return true;
+        }
+        layer.mDrawable.invalidateSelf();
+        return false;
+    }
+
+    /**
+     * The bitmaps and pixel buffers of one system bar.
+     */
+    private static class Layer {
+
+        private Bitmap mInput;
+        private Bitmap mOutput;
+        private Bitmap mRetiredOutput;
+        private int[] mPixels;
+        private int[] mLastPixels;
+        private BitmapDrawable mDrawable;
+        private boolean mDirty;
+
+        /**
+         * @return True if new bitmaps were obtained.
+         */
+        private boolean prepare(int width, int height) {
+            if (mInput != null && mInput.getWidth() == width && mInput.getHeight() == height) {
+                return false;
+            }
+            // the previous output stays drawn until the new drawable is set
+            TintBitmapPool.release(mInput);
+            mRetiredOutput = mOutput;
+            mInput = TintBitmapPool.obtain(width, height);
+            mOutput = TintBitmapPool.obtain(width, height);
+            mPixels = new int[width * height];
+            mLastPixels = new int[width * height];
+            return true;
+        }
+
+        private void releaseRetired() {
+            TintBitmapPool.release(mRetiredOutput);
+            mRetiredOutput = null;
+        }
+
+        private void release() {
+            releaseRetired();
+            TintBitmapPool.release(mInput);
+            TintBitmapPool.release(mOutput);
+            mInput = null;
+            mOutput = null;
+            mDrawable = null;
+        }
+
+    }
+
+    /**
+     * Blurs with the RenderScript blur intrinsic, keeping the allocations of each
+     * slot for as long as its bitmaps are unchanged.
+     */
+    @TargetApi(17)
+    private static class RenderScriptBlur {
+
+        private final RenderScript mRenderScript;
+        private final ScriptIntrinsicBlur mScript;
+        private final Bitmap[] mBitmaps = new Bitmap[2];
+        private final Allocation[] mInputs = new Allocation[2];
+        private final Allocation[] mOutputs = new Allocation[2];
+
+        private RenderScriptBlur(RenderScript renderScript) {
+            mRenderScript = renderScript;
+            mScript = ScriptIntrinsicBlur.create(renderScript, Element.U8_4(renderScript));
+        }
+
+        /**
+         * @return The blur, or null if RenderScript is not usable on this device.
+         */
+        static RenderScriptBlur create(Context context) {
+            try {
+                return new RenderScriptBlur(RenderScript.create(context));
+            } catch (RSRuntimeException e) {
+                return null;
+            }
+        }
+
+        void blur(int slot, Bitmap input, Bitmap output, int radius) {
+            if (mBitmaps[slot] != input) {
+                destroy(slot);
+                mBitmaps[slot] = input;
+                mInputs[slot] = Allocation.createFromBitmap(mRenderScript, input);
+                mOutputs[slot] = Allocation.createTyped(mRenderScript, mInputs[slot].getType());
+            } else {
+                mInputs[slot].copyFrom(input);
+            }
+            mScript.setRadius(radius);
+            mScript.setInput(mInputs[slot]);
+            mScript.forEach(mOutputs[slot]);
+            mOutputs[slot].copyTo(output);
+        }
+
+        private void destroy(int slot) {
+            if (mInputs[slot] != null) {
+                mInputs[slot].destroy();
+                mOutputs[slot].destroy();
+                mInputs[slot] = null;
+                mOutputs[slot] = null;
+            }
+            mBitmaps[slot] = null;
+        }
+
+        void destroy() {
+            destroy(0);
+            destroy(1);
+            mScript.destroy();
+            mRenderScript.destroy();
+        }
+
+        /**
+         * Destroy after a failure, when the context itself may no longer be usable.
+         */
+        void destroyQuietly() {
+            try {
+                destroy();
+            } catch (RSRuntimeException e) {
+                // nothing more to release
+            }
+        }
+
+    }
+
+}
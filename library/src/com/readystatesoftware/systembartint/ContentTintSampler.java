@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2013 readyState Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.readystatesoftware.systembartint;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.os.SystemClock;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+/**
+ * Tints the system bars with the average color of the content currently drawn
+ * beneath them. Only the strips of the content view under the bars are drawn, at
+ * reduced resolution, and the colors are averaged on a background thread.
+ *
+ * Samples are taken at most once per interval, and only after the content has
+ * been redrawn, so sampling stops while the content is idle. The alpha of the
+ * current tint colors is kept, only their color components are replaced.
+ *
+ * Obtain an instance with {@link SystemBarTintManager#startContentSampling(View, long)}.
+ */
+public class ContentTintSampler {
+
+    // samples are drawn at 1/8 of the content resolution
+    private static final int SCALE_DIVISOR = 8;
+
+    private final SystemBarTintManager mManager;
+    private final View mContentView;
+    private final ViewTreeObserver.OnPreDrawListener mPreDrawListener;
+    private final StripCapture mCapture;
+    private final Rect mRegion = new Rect();
+    private final Strip mStatusStrip = new Strip();
+    private final Strip mNavStrip = new Strip();
+    private long mInterval;
+    private long mLastSampleTime;
+    private boolean mStatusBar = true;
+    private boolean mNavigationBar = true;
+    private boolean mDirty = true;
+    private boolean mScheduled;
+    private boolean mBusy;
+    private boolean mStarted = true;
+
+    private final Runnable mSampleRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mScheduled = false;
+            sample();
+        }
+    };
+
+    private final Runnable mAverageRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mStatusStrip.average();
+            mNavStrip.average();
+            TintExecutor.postToMainThread(mApplyRunnable);
+        }
+    };
+
+    private final Runnable mApplyRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mBusy = false;
+            apply();
+        }
+    };
+
+    ContentTintSampler(SystemBarTintManager manager, View contentView, long interval) {
+        mManager = manager;
+        mContentView = contentView;
+        mCapture = new StripCapture(contentView);
+        mInterval = interval;
+        mPreDrawListener = new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                mDirty = true;
+                schedule();
+                return true;
+            }
+        };
+        contentView.getViewTreeObserver().addOnPreDrawListener(mPreDrawListener);
+        schedule();
+    }
+
+    /**
+     * Set the minimum time between two samples.
+     *
+     * @param interval The interval in milliseconds.
+     * @return This sampler.
+     */
+    public ContentTintSampler setInterval(long interval) {
+        mInterval = interval;
+        return this;
+    }
+
+    /**
+     * Choose the system bars whose tint is sampled.
+     *
+     * @param statusBar True to sample the status bar tint (default).
+     * @param navigationBar True to sample the navigation bar tint (default).
+     * @return This sampler.
+     */
+    public ContentTintSampler setTargets(boolean statusBar, boolean navigationBar) {
+        mStatusBar = statusBar;
+        mNavigationBar = navigationBar;
+        mDirty = true;
+        schedule();
+        return this;
+    }
+
+    /**
+     * Stop sampling and release the content view. The tints keep their last colors.
+     */
+    public void stop() {
+        mStarted = false;
+        mContentView.removeCallbacks(mSampleRunnable);
+        ViewTreeObserver observer = mContentView.getViewTreeObserver();
+        if (observer.isAlive()) {
+            observer.removeOnPreDrawListener(mPreDrawListener);
+        }
+    }
+
+    private void schedule() {
+        if (!mStarted || mScheduled || mBusy) {
+            return;
+        }
+        mScheduled = true;
+        long delay = mLastSampleTime + mInterval - SystemClock.uptimeMillis();
+        mContentView.postDelayed(mSampleRunnable, Math.max(0, delay));
+    }
+
+    private void sample() {
+        if (!mStarted || !mDirty) {
+            return;
+        }
+        if (mContentView.getWidth() == 0 || mContentView.getHeight() == 0) {
+            return;
+        }
+        mDirty = false;
+        mLastSampleTime = SystemClock.uptimeMillis();
+
+        SystemBarTintManager.SystemBarConfig config = mManager.getConfig();
+        mStatusStrip.mValid = mStatusBar && mManager.isStatusBarTintEnabled()
+                && mCapture.getStatusBarRegion(config, mRegion) && capture(mStatusStrip);
+        mNavStrip.mValid = mNavigationBar && mManager.isNavBarTintEnabled()
+                && mCapture.getNavBarRegion(config, mRegion) && capture(mNavStrip);
+        if (mStatusStrip.mValid || mNavStrip.mValid) {
+            mBusy = true;
+            TintExecutor.execute(mAverageRunnable);
+        }
+    }
+
+    /**
+     * Draw the content covering the current region into the strip bitmap, and copy
+     * its pixels for averaging.
+     */
+    private boolean capture(Strip strip) {
+        int w = Math.max(1, mRegion.width() / SCALE_DIVISOR);
+        int h = Math.max(1, mRegion.height() / SCALE_DIVISOR);
+        strip.prepare(w, h);
+        mCapture.draw(mRegion, strip.mBitmap);
+        strip.mBitmap.getPixels(strip.mPixels, 0, w, 0, 0, w, h);
+        return true;
+    }
+
+    private void apply() {
+        if (!mStarted) {
+            return;
+        }
+        if (mStatusStrip.mValid) {
+            int current = mManager.getStatusBarTintColor();
+            mManager.setStatusBarTintColor((current & 0xff000000) | (mStatusStrip.mColor & 0x00ffffff));
+        }
+        if (mNavStrip.mValid) {
+            int current = mManager.getNavigationBarTintColor();
+            mManager.setNavigationBarTintColor((current & 0xff000000) | (mNavStrip.mColor & 0x00ffffff));
+        }
+        if (mDirty) {
+            schedule();
+        }
+    }
+
+    /**
+     * The reusable sample buffers of one system bar. The pixels are only written on
+     * the main thread while no average is in progress.
+     */
+    private static class Strip {
+
+        private Bitmap mBitmap;
+        private int[] mPixels;
+        private int mWidth;
+        private int mHeight;
+        private boolean mValid;
+        private int mColor;
+
+        private void prepare(int width, int height) {
+            if (mBitmap == null || mWidth != width || mHeight != height) {
+                if (mBitmap != null) {
+                    mBitmap.recycle();
+                }
+                mBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+                mPixels = new int[width * height];
+                mWidth = width;
+                mHeight = height;
+            }
+        }
+
+        private void average() {
+            if (mValid) {
+                mColor = BitmapTintExtractor.average(mPixels, mWidth, 0, 0, mWidth, mHeight);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2013 readyState Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.readystatesoftware.systembartint;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.Choreographer;
+
+/**
+ * Delivers at most one callback per display frame to a single client. Uses the
+ * Choreographer where available and falls back to a main thread handler posting
+ * at a nominal 60 fps on earlier platforms. Must be used from the main thread.
+ */
+abstract class FrameScheduler {
+
+    interface Callback {
+
+        /**
+         * Called once for each frame the callback was scheduled for.
+         *
+         * @param frameTimeNanos The frame time, in the {@link System#nanoTime()} time base.
+         */
+        void doFrame(long frameTimeNanos);
+
+    }
+
+    protected final Callback mCallback;
+    protected boolean mScheduled;
+
+    FrameScheduler(Callback callback) {
+        mCallback = callback;
+    }
+
+    static FrameScheduler create(Callback callback) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            return new ChoreographerScheduler(callback);
+        } else {
+            return new HandlerScheduler(callback);
+        }
+    }
+
+    /**
+     * Request a callback on the next frame. Repeated requests before that frame
+     * is delivered are coalesced.
+     */
+    void schedule() {
+        if (!mScheduled) {
+            mScheduled = true;
+            onSchedule();
+        }
+    }
+
+    void cancel() {
+        if (mScheduled) {
+            mScheduled = false;
+            onCancel();
+        }
+    }
+
+    boolean isScheduled() {
+        return mScheduled;
+    }
+
+    protected void dispatchFrame(long frameTimeNanos) {
+        mScheduled = false;
+        mCallback.doFrame(frameTimeNanos);
+    }
+
+    protected abstract void onSchedule();
+
+    protected abstract void onCancel();
+
+    @TargetApi(16)
+    private static class ChoreographerScheduler extends FrameScheduler implements Choreographer.FrameCallback {
+
+        private final Choreographer mChoreographer = Choreographer.getInstance();
+
+        ChoreographerScheduler(Callback callback) {
+            super(callback);
+        }
+
+        @Override
+        protected void onSchedule() {
+            mChoreographer.postFrameCallback(this);
+        }
+
+        @Override
+        protected void onCancel() {
+            mChoreographer.removeFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            dispatchFrame(frameTimeNanos);
+        }
+
+    }
+
+    private static class HandlerScheduler extends FrameScheduler implements Runnable {
+
+        private static final long FRAME_DELAY_MS = 16;
+
+        private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+        HandlerScheduler(Callback callback) {
+            super(callback);
+        }
+
+        @Override
+        protected void onSchedule() {
+            mHandler.postDelayed(this, FRAME_DELAY_MS);
+        }
+
+        @Override
+        protected void onCancel() {
+            mHandler.removeCallbacks(this);
+        }
+
+        @Override
+        public void run() {
+            dispatchFrame(SystemClock.uptimeMillis() * 1000000L);
+        }
+
+    }
+
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright (C) 2013 readyState Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.readystatesoftware.systembartint;
+
+import android.view.View;
+import android.view.ViewTreeObserver;
+import android.widget.AbsListView;
+import android.widget.ScrollView;
+
+/**
+ * Links the system bar tints to a scroll offset. Offsets within a range are mapped
+ * onto a range of tint colors and/or alpha values. Scroll notifications are
+ * coalesced and the latest offset is applied at most once per frame.
+ *
+ * Obtain an instance with one of the {@code bindTintToScroll} methods of
+ * {@link SystemBarTintManager}. By default only the status bar tint is updated.
+ */
+public class ScrollTintBinding {
+
+    /**
+     * Supplies the scroll offset for a binding. Sources that are not views supported
+     * directly by {@link SystemBarTintManager} should call
+     * {@link ScrollTintBinding#notifyScrollChanged()} whenever their offset changes.
+     */
+    public interface OffsetSource {
+
+        /**
+         * Get the current scroll offset.
+         *
+         * @return The offset, in pixels.
+         */
+        int getScrollOffset();
+
+    }
+
+    private final SystemBarTintManager mManager;
+    private final OffsetSource mSource;
+    private final FrameScheduler mScheduler;
+    private View mObservedView;
+    private ViewTreeObserver.OnScrollChangedListener mScrollChangedListener;
+
+    private int mStartOffset;
+    private int mEndOffset;
+    private boolean mColorRangeSet;
+    private int mStartColor;
+    private int mEndColor;
+    private boolean mAlphaRangeSet;
+    private float mStartAlpha;
+    private float mEndAlpha;
+    private boolean mStatusBar = true;
+    private boolean mNavigationBar;
+    private float mLastFraction = -1f;
+    private boolean mBound = true;
+
+    ScrollTintBinding(SystemBarTintManager manager, OffsetSource source) {
+        mManager = manager;
+        mSource = source;
+        mScheduler = FrameScheduler.create(new FrameScheduler.Callback() {
+            @Override
+            public void doFrame(long frameTimeNanos) {
+                update();
+            }
+        });
+    }
+
+    static ScrollTintBinding forScrollView(SystemBarTintManager manager, final ScrollView scrollView) {
+        ScrollTintBinding binding = new ScrollTintBinding(manager, new OffsetSource() {
+            @Override
+            public int getScrollOffset() {
+                return scrollView.getScrollY();
+            }
+        });
+        binding.observe(scrollView);
+        return binding;
+    }
+
+    static ScrollTintBinding forListView(SystemBarTintManager manager, final AbsListView listView) {
+        ScrollTintBinding binding = new ScrollTintBinding(manager, new OffsetSource() {
+            @Override
+            public int getScrollOffset() {
+                if (listView.getChildCount() == 0) {
+                    return 0;
+                }
+                if (listView.getFirstVisiblePosition() > 0) {
+                    // past the first item, which is as far as offsets are meaningful
+                    return Integer.MAX_VALUE;
+                }
+                return -listView.getChildAt(0).getTop();
+            }
+        });
+        binding.observe(listView);
+        return binding;
+    }
+
+    /**
+     * Scroll changes of any view in the window are reported through the tree observer,
+     * including list views, which report item scrolling as a scroll change.
+     */
+    private void observe(View view) {
+        mObservedView = view;
+        mScrollChangedListener = new ViewTreeObserver.OnScrollChangedListener() {
+            @Override
+            public void onScrollChanged() {
+                notifyScrollChanged();
+            }
+        };
+        view.getViewTreeObserver().addOnScrollChangedListener(mScrollChangedListener);
+    }
+
+    /**
+     * Set the range of scroll offsets mapped onto the color and alpha ranges. Offsets
+     * outside of this range are clamped to it.
+     *
+     * @param start The offset at which the start values apply.
+     * @param end The offset at which the end values apply.
+     * @return This binding.
+     */
+    public ScrollTintBinding setOffsetRange(int start, int end) {
+        mStartOffset = start;
+        mEndOffset = end;
+        invalidate();
+        return this;
+    }
+
+    /**
+     * Set the range of tint colors to interpolate between as the offset changes.
+     *
+     * @param start The tint color at the start of the offset range.
+     * @param end The tint color at the end of the offset range.
+     * @return This binding.
+     */
+    public ScrollTintBinding setColorRange(int start, int end) {
+        mColorRangeSet = true;
+        mStartColor = start;
+        mEndColor = end;
+        invalidate();
+        return this;
+    }
+
+    /**
+     * Set the range of tint alpha values to interpolate between as the offset changes.
+     *
+     * @param start The alpha at the start of the offset range.
+     * @param end The alpha at the end of the offset range.
+     * @return This binding.
+     */
+    public ScrollTintBinding setAlphaRange(float start, float end) {
+        mAlphaRangeSet = true;
+        mStartAlpha = start;
+        mEndAlpha = end;
+        invalidate();
+        return this;
+    }
+
+    /**
+     * Choose the system bars updated by this binding.
+     *
+     * @param statusBar True to update the status bar tint (default).
+     * @param navigationBar True to update the navigation bar tint.
+     * @return This binding.
+     */
+    public ScrollTintBinding setTargets(boolean statusBar, boolean navigationBar) {
+        mStatusBar = statusBar;
+        mNavigationBar = navigationBar;
+        invalidate();
+        return this;
+    }
+
+    /**
+     * Notify the binding that the scroll offset of its source may have changed. The
+     * offset is read and applied on the next frame, however many times this is called
+     * before then.
+     */
+    public void notifyScrollChanged() {
+        if (mBound) {
+            mScheduler.schedule();
+        }
+    }
+
+    /**
+     * Stop updating the tints and release the scroll source.
+     */
+    public void unbind() {
+        mBound = false;
+        mScheduler.cancel();
+        if (mObservedView != null) {
+            ViewTreeObserver observer = mObservedView.getViewTreeObserver();
+            if (observer.isAlive()) {
+                observer.removeOnScrollChangedListener(mScrollChangedListener);
+            }
+            mObservedView = null;
+            mScrollChangedListener = null;
+        }
+    }
+
+    private void invalidate() {
+        mLastFraction = -1f;
+        notifyScrollChanged();
+    }
+
+    private void update() {
+        int offset = mSource.getScrollOffset();
+        float fraction;
+        if (mEndOffset == mStartOffset) {
+            fraction = (offset < mStartOffset) ? 0f : 1f;
+        } else {
+            fraction = ((float) offset - mStartOffset) / ((float) mEndOffset - mStartOffset);
+            fraction = Math.max(0f, Math.min(1f, fraction));
+        }
+        if (fraction == mLastFraction) {
+            return;
+        }
+        mLastFraction = fraction;
+        if (mColorRangeSet) {
+            int color = TintColorAnimator.blend(mStartColor, mEndColor, fraction);
+            if (mStatusBar) {
+                mManager.setStatusBarTintColor(color);
+            }
+            if (mNavigationBar) {
+                mManager.setNavigationBarTintColor(color);
+            }
+        }
+        if (mAlphaRangeSet) {
+            float alpha = mStartAlpha + (mEndAlpha - mStartAlpha) * fraction;
+            if (mStatusBar) {
+                mManager.setStatusBarAlpha(alpha);
+            }
+            if (mNavigationBar) {
+                mManager.setNavigationBarAlpha(alpha);
+            }
+        }
+    }
+
+}
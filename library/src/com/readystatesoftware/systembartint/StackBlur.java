@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2013 readyState Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.readystatesoftware.systembartint;
+
+/**
+ * Pure Java stack blur, used where RenderScript intrinsics are not available. Each
+ * pass weights the pixels within the radius linearly by their distance, which is a
+ * close and fast approximation of a gaussian blur. All four channels are blurred,
+ * so the alpha of the source is kept as with the RenderScript blur. The color
+ * channels are blurred premultiplied, so transparent pixels do not darken the
+ * edges of the opaque ones next to them.
+ */
+final class StackBlur {
+
+    private StackBlur() {
+    }
+
+    /**
+     * Blur an image in place.
+     *
+     * @param pixels The non-premultiplied ARGB pixels of the image, row by row, as
+     *            returned by {@link android.graphics.Bitmap#getPixels}.
+     * @param temp A buffer at least as large as the image.
+     * @param radius The blur radius, in pixels.
+     */
+    static void blur(int[] pixels, int[] temp, int width, int height, int radius) {
+        if (radius < 1) {
+            return;
+        }
+        int size = width * height;
+        premultiply(pixels, size);
+        pass(pixels, temp, height, width, width, 1, radius);
+        pass(temp, pixels, width, height, 1, width, radius);
+        unpremultiply(pixels, size);
+    }
+
+    private static void premultiply(int[] pixels, int size) {
+        for (int i = 0; i < size; i++) {
+            int p = pixels[i];
+            int a = p >>> 24;
+            if (a == 0xff) {
+                continue;
+            }
+            int r = (((p >> 16) & 0xff) * a + 127) / 255;
+            int g = (((p >> 8) & 0xff) * a + 127) / 255;
+            int b = ((p & 0xff) * a + 127) / 255;
+            pixels[i] = (a << 24) | (r << 16) | (g << 8) | b;
+        }
+    }
+
+    private static void unpremultiply(int[] pixels, int size) {
+        for (int i = 0; i < size; i++) {
+            int p = pixels[i];
+            int a = p >>> 24;
+            if (a == 0xff) {
+                continue;
+            }
+            if (a == 0) {
+                pixels[i] = 0;
+                continue;
+            }
+            int half = a / 2;
+            int r = Math.min(0xff, (((p >> 16) & 0xff) * 255 + half) / a);
+            int g = Math.min(0xff, (((p >> 8) & 0xff) * 255 + half) / a);
+            int b = Math.min(0xff, ((p & 0xff) * 255 + half) / a);
+            pixels[i] = (a << 24) | (r << 16) | (g << 8) | b;
+        }
+    }
+
+    /**
+     * Blur each line of the source into the destination. Lines start {@code lineStride}
+     * apart and their pixels are {@code step} apart, so the same pass handles rows
+     * and columns.
+     */
+    private static void pass(int[] src, int[] dst, int lines, int length, int lineStride, int step, int radius) {
+        int div = (radius + 1) * (radius + 1);
+        int last = length - 1;
+        for (int line = 0; line < lines; line++) {
+            int base = line * lineStride;
+            // sum is the weighted total, the out sums cover the pixels from x - radius
+            // to x and the in sums the pixels from x + 1 to x + radius
+            int sumA = 0;
+            int sumR = 0;
+            int sumG = 0;
+            int sumB = 0;
+            int outA = 0;
+            int outR = 0;
+            int outG = 0;
+            int outB = 0;
+            int inA = 0;
+            int inR = 0;
+            int inG = 0;
+            int inB = 0;
+            for (int k = -radius; k <= radius; k++) {
+                int p = src[base + Math.max(0, Math.min(k, last)) * step];
+                int a = p >>> 24;
+                int r = (p >> 16) & 0xff;
+                int g = (p >> 8) & 0xff;
+                int b = p & 0xff;
+                int weight = radius + 1 - Math.abs(k);
+                sumA += a * weight;
+                sumR += r * weight;
+                sumG += g * weight;
+                sumB += b * weight;
+                if (k <= 0) {
+                    outA += a;
+                    outR += r;
+                    outG += g;
+                    outB += b;
+                } else {
+                    inA += a;
+                    inR += r;
+                    inG += g;
+                    inB += b;
+                }
+            }
+            for (int x = 0; x < length; x++) {
+                dst[base + x * step] = ((sumA / div) << 24) | ((sumR / div) << 16) | ((sumG / div) << 8) | (sumB / div);
+
+                sumA -= outA;
+                sumR -= outR;
+                sumG -= outG;
+                sumB -= outB;
+
+                int p = src[base + Math.min(x + radius + 1, last) * step];
+                inA += p >>> 24;
+                inR += (p >> 16) & 0xff;
+                inG += (p >> 8) & 0xff;
+                inB += p & 0xff;
+                sumA += inA;
+                sumR += inR;
+                sumG += inG;
+                sumB += inB;
+
+                p = src[base + Math.max(x - radius, 0) * step];
+                outA -= p >>> 24;
+                outR -= (p >> 16) & 0xff;
+                outG -= (p >> 8) & 0xff;
+                outB -= p & 0xff;
+
+                p = src[base + Math.min(x + 1, last) * step];
+                int a = p >>> 24;
+                int r = (p >> 16) & 0xff;
+                int g = (p >> 8) & 0xff;
+                int b = p & 0xff;
+                outA += a;
+                outR += r;
+                outG += g;
+                outB += b;
+                inA -= a;
+                inR -= r;
+                inG -= g;
+                inB -= b;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2013 readyState Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.readystatesoftware.systembartint;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.view.View;
+
+/**
+ * Draws the parts of a content view that lie beneath the system bars into small
+ * bitmaps. Only the clipped strip is drawn, scaled down to the target bitmap.
+ * Must be used from the main thread.
+ */
+final class StripCapture {
+
+    private final View mContentView;
+    private final Canvas mCanvas = new Canvas();
+    private final int[] mLocation = new int[2];
+
+    StripCapture(View contentView) {
+        mContentView = contentView;
+    }
+
+    /**
+     * Get the window region covered by the status bar.
+     *
+     * @return False if the region is empty.
+     */
+    boolean getStatusBarRegion(SystemBarTintManager.SystemBarConfig config, Rect out) {
+        View root = mContentView.getRootView();
+        out.set(0, 0, root.getWidth(), config.getStatusBarHeight());
+        return out.width() > 0 && out.height() > 0;
+    }
+
+    /**
+     * Get the window region covered by the navigation bar.
+     *
+     * @return False if the region is empty.
+     */
+    boolean getNavBarRegion(SystemBarTintManager.SystemBarConfig config, Rect out) {
+        View root = mContentView.getRootView();
+        int width = root.getWidth();
+        int height = root.getHeight();
+        if (config.isNavigationAtBottom()) {
+            out.set(0, height - config.getNavigationBarHeight(), width, height);
+        } else {
+            out.set(width - config.getNavigationBarWidth(), 0, width, height);
+        }
+        return out.width() > 0 && out.height() > 0;
+    }
+
+    /**
+     * Draw the content covering a window region, scaled to fill the target bitmap.
+     */
+    void draw(Rect region, Bitmap target) {
+        mContentView.getLocationInWindow(mLocation);
+        target.eraseColor(0);
+        mCanvas.setBitmap(target);
+        int count = mCanvas.save();
+        mCanvas.scale((float) target.getWidth() / region.width(), (float) target.getHeight() / region.height());
+        mCanvas.translate(mLocation[0] - region.left, mLocation[1] - region.top);
+        mContentView.draw(mCanvas);
+        mCanvas.restoreToCount(count);
+    }
+
+}
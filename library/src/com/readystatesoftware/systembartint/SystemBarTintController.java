@@ -0,0 +1,288 @@
+/*
+ * Copyright (C) 2013 readyState Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.readystatesoftware.systembartint;
+
+import android.annotation.TargetApi;
+import android.app.Activity;
+import android.app.Application;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.os.Bundle;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Attaches a {@link SystemBarTintManager} to every activity of an application according
+ * to a tint policy declared with manifest meta-data, so that activities do not need
+ * to create and configure managers themselves. Install it from your application's
+ * onCreate method. On releases older than API 14 the controller can be installed but
+ * does nothing.
+ *
+ * The policy of an activity is read from its meta-data, falling back to the meta-data
+ * of the application element:
+ *
+ * <pre>
+ * &lt;meta-data android:name="com.readystatesoftware.systembartint.tintColor"
+ *     android:value="#ff336699" /&gt;
+ * &lt;meta-data android:name="com.readystatesoftware.systembartint.navigationBarTintEnabled"
+ *     android:value="false" /&gt;
+ * </pre>
+ *
+ * Activities for which neither a tint color nor a tint resource is declared are left
+ * untouched. Policies are resolved once per activity class.
+ */
+public class SystemBarTintController {
+
+    /**
+     * Meta-data name of the tint color, declared with {@code android:value}.
+     */
+    public static final String META_TINT_COLOR = "com.readystatesoftware.systembartint.tintColor";
+
+    /**
+     * Meta-data name of the tint drawable or color resource, declared with {@code android:resource}.
+     */
+    public static final String META_TINT_RESOURCE = "com.readystatesoftware.systembartint.tintResource";
+
+    /**
+     * Meta-data name of a boolean which enables tinting of the status bar (default true).
+     */
+    public static final String META_STATUS_BAR_TINT_ENABLED = "com.readystatesoftware.systembartint.statusBarTintEnabled";
+
+    /**
+     * Meta-data name of a boolean which enables tinting of the navigation bar (default true).
+     */
+    public static final String META_NAV_BAR_TINT_ENABLED = "com.readystatesoftware.systembartint.navigationBarTintEnabled";
+
+    private static final Policy NO_POLICY = new Policy();
+
+    private final Application mApplication;
+    private final Bundle mApplicationMetaData;
+    private final int mRenderMode;
+    private final Map<Class<?>, Policy> mPolicies = new HashMap<Class<?>, Policy>();
+    private final Map<Activity, SystemBarTintManager> mManagers = new HashMap<Activity, SystemBarTintManager>();
+    private Object mCallbacks;
+
+    private SystemBarTintController(Application application, int renderMode) {
+        mApplication = application;
+        mRenderMode = renderMode;
+        Bundle metaData = null;
+        try {
+            ApplicationInfo info = application.getPackageManager().getApplicationInfo(
+                    application.getPackageName(), PackageManager.GET_META_DATA);
+            metaData = info.metaData;
+        } catch (PackageManager.NameNotFoundException e) {
+            // no application defaults
+        }
+        mApplicationMetaData = metaData;
+    }
+
+    /**
+     * Install a controller for all activities of the application, rendering tints with
+     * {@link SystemBarTintManager#RENDER_MODE_VIEWS}. Before API 14 the returned controller
+     * is inactive and never attaches managers.
+     *
+     * @param application The application.
+     * @return The installed controller.
+     */
+    public static SystemBarTintController install(Application application) {
+        return install(application, SystemBarTintManager.RENDER_MODE_VIEWS);
+    }
+
+    /**
+     * Install a controller for all activities of the application. Before API 14 the
+     * returned controller is inactive and never attaches managers.
+     *
+     * @param application The application.
+     * @param renderMode The render mode of the created managers.
+     * @return The installed controller.
+     */
+    public static SystemBarTintController install(Application application, int renderMode) {
+        SystemBarTintController controller = new SystemBarTintController(application, renderMode);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+            controller.registerCallbacks();
+        }
+        return controller;
+    }
+
+    /**
+     * Stop attaching managers to new activities and release the existing ones.
+     */
+    public void uninstall() {
+        if (mCallbacks != null) {
+            unregisterCallbacks();
+        }
+        mManagers.clear();
+    }
+
+    // the lifecycle callbacks are kept in a separate class so that this class can
+    // still be loaded on releases without them
+
+    @TargetApi(14)
+    private void registerCallbacks() {
+        LifecycleCallbacks callbacks = new LifecycleCallbacks();
+        mApplication.registerActivityLifecycleCallbacks(callbacks);
+        mCallbacks = callbacks;
+    }
+
+    @TargetApi(14)
+    private void unregisterCallbacks() {
+        mApplication.unregisterActivityLifecycleCallbacks((LifecycleCallbacks) mCallbacks);
+        mCallbacks = null;
+    }
+
+    /**
+     * Get the manager attached to an activity, for example to change its tint at runtime.
+     * The manager is attached when the activity is first started.
+     *
+     * @param activity The activity.
+     * @return The manager, or null if the activity has no tint policy or is not started yet.
+     */
+    public SystemBarTintManager getManager(Activity activity) {
+        return mManagers.get(activity);
+    }
+
+    private void onActivityStarted(Activity activity) {
+        if (mManagers.containsKey(activity)) {
+            return;
+        }
+        Policy policy = getPolicy(activity);
+        if (policy == NO_POLICY) {
+            return;
+        }
+        SystemBarTintManager manager = new SystemBarTintManager(activity, mRenderMode);
+        if (policy.mResource != 0) {
+            manager.setTintResource(policy.mResource);
+        } else {
+            manager.setTintColor(policy.mColor);
+        }
+        manager.setStatusBarTintEnabled(policy.mStatusBarTintEnabled);
+        manager.setNavigationBarTintEnabled(policy.mNavBarTintEnabled);
+        mManagers.put(activity, manager);
+    }
+
+    private Policy getPolicy(Activity activity) {
+        Class<?> cls = activity.getClass();
+        Policy policy = mPolicies.get(cls);
+        if (policy == null) {
+            policy = readPolicy(activity);
+            mPolicies.put(cls, policy);
+        }
+        return policy;
+    }
+
+    private Policy readPolicy(Activity activity) {
+        Bundle metaData = null;
+        try {
+            metaData = activity.getPackageManager().getActivityInfo(
+                    activity.getComponentName(), PackageManager.GET_META_DATA).metaData;
+        } catch (PackageManager.NameNotFoundException e) {
+            // not a manifest activity, use the application defaults
+        }
+        boolean hasColor = containsKey(metaData, META_TINT_COLOR);
+        int resource = getInt(metaData, META_TINT_RESOURCE, 0);
+        if (!hasColor && resource == 0) {
+            return NO_POLICY;
+        }
+        Policy policy = new Policy();
+        policy.mColor = getInt(metaData, META_TINT_COLOR, SystemBarTintManager.DEFAULT_TINT_COLOR);
+        policy.mResource = resource;
+        policy.mStatusBarTintEnabled = getBoolean(metaData, META_STATUS_BAR_TINT_ENABLED, true);
+        policy.mNavBarTintEnabled = getBoolean(metaData, META_NAV_BAR_TINT_ENABLED, true);
+        return policy;
+    }
+
+    private boolean containsKey(Bundle metaData, String key) {
+        return (metaData != null && metaData.containsKey(key))
+                || (mApplicationMetaData != null && mApplicationMetaData.containsKey(key));
+    }
+
+    private int getInt(Bundle metaData, String key, int defaultValue) {
+        if (metaData != null && metaData.containsKey(key)) {
+            return metaData.getInt(key, defaultValue);
+        }
+        if (mApplicationMetaData != null) {
+            return mApplicationMetaData.getInt(key, defaultValue);
+        }
+        return defaultValue;
+    }
+
+    private boolean getBoolean(Bundle metaData, String key, boolean defaultValue) {
+        if (metaData != null && metaData.containsKey(key)) {
+            return metaData.getBoolean(key, defaultValue);
+        }
+        if (mApplicationMetaData != null) {
+            return mApplicationMetaData.getBoolean(key, defaultValue);
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Forwards the activity lifecycle to the controller. Only loaded on API 14 and
+     * above, where the callbacks exist.
+     */
+    @TargetApi(14)
+    private class LifecycleCallbacks implements Application.ActivityLifecycleCallbacks {
+
+        @Override
+        public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+            // resolve the policy now, the manager is created once the content view is set
+            getPolicy(activity);
+        }
+
+        @Override
+        public void onActivityStarted(Activity activity) {
+            SystemBarTintController.this.onActivityStarted(activity);
+        }
+
+        @Override
+        public void onActivityResumed(Activity activity) {
+        }
+
+        @Override
+        public void onActivityPaused(Activity activity) {
+        }
+
+        @Override
+        public void onActivityStopped(Activity activity) {
+        }
+
+        @Override
+        public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+        }
+
+        @Override
+        public void onActivityDestroyed(Activity activity) {
+            mManagers.remove(activity);
+        }
+
+    }
+
+    /**
+     * The tint declared for an activity class.
+     */
+    private static class Policy {
+
+        private int mColor;
+        private int mResource;
+        private boolean mStatusBarTintEnabled;
+        private boolean mNavBarTintEnabled;
+
+    }
+
+}
@@ -23,19 +23,28 @@ import android.content.Context;
 import android.content.res.Configuration;
 import android.content.res.Resources;
 import android.content.res.TypedArray;
+import android.graphics.Bitmap;
 import android.graphics.drawable.Drawable;
 import android.os.Build;
+import android.os.Trace;
 import android.util.DisplayMetrics;
 import android.util.TypedValue;
+import android.view.Display;
 import android.view.Gravity;
 import android.view.View;
 import android.view.ViewConfiguration;
 import android.view.ViewGroup;
 import android.view.Window;
 import android.view.WindowManager;
+import android.view.animation.Interpolator;
+import android.widget.AbsListView;
 import android.widget.FrameLayout.LayoutParams;
+import android.widget.ScrollView;
 
 import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 /**
  * Class to manage status and navigation bar tint effects when using KitKat 
@@ -44,62 +53,104 @@ import java.lang.reflect.Method;
  */
 public class SystemBarTintManager {
 
-    static {
-        // Android allows a system property to override the presence of the navigation bar.
-        // Used by the emulator.
-        // See https://github.com/android/platform_frameworks_base/blob/master/policy/src/com/android/internal/policy/impl/PhoneWindowManager.java#L1076
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
-            try {
-                Class c = Class.forName("android.os.SystemProperties");
-                Method m = c.getDeclaredMethod("get", String.class);
-                m.setAccessible(true);
-                sNavBarOverride = (String) m.invoke(null, "qemu.hw.mainkeys");
-            } catch (Throwable e) {
-                sNavBarOverride = null;
-            }
-        }
-    }
-
-
     /**
      * The default system bar tint color value.
      */
     public static final int DEFAULT_TINT_COLOR = 0x99000000;
 
-    private static String sNavBarOverride;
+    /**
+     * Render each system bar tint with its own view added to the window decor (default).
+     */
+    public static final int RENDER_MODE_VIEWS = 0;
+
+    /**
+     * Render both system bar tints with a single drawable in the window decor overlay,
+     * without adding any views to the decor hierarchy. Requires API 18, falls back to
+     * {@link #RENDER_MODE_VIEWS} on earlier platforms.
+     */
+    public static final int RENDER_MODE_OVERLAY = 1;
+
+    /**
+     * Scrim style which fades the tint color linearly away from the screen edge.
+     */
+    public static final int SCRIM_LINEAR = 0;
+
+    /**
+     * Scrim style which fades the tint color along an ease in/out curve, avoiding the
+     * visible band at the ends of a linear fade.
+     */
+    public static final int SCRIM_EASED = 1;
+
+    private static volatile TintMetrics sMetrics;
 
-    private final SystemBarConfig mConfig;
+    private final Activity mActivity;
+    private final ViewGroup mDecorViewGroup;
+    private SystemBarConfig mConfig;
+    private final BarTint mStatusBarTint;
+    private final BarTint mNavBarTint;
+    private Editor mEditor;
+    private TintColorAnimator mStatusBarAnimator;
+    private TintColorAnimator mNavBarAnimator;
+    private int mBitmapTintRequest;
+    private int mTintUpdateCount;
+    private int mInvalidationCount;
     private boolean mStatusBarAvailable;
     private boolean mNavBarAvailable;
     private boolean mStatusBarTintEnabled;
     private boolean mNavBarTintEnabled;
-    private View mStatusBarTintView;
-    private View mNavBarTintView;
 
     /**
      * Constructor. Call this in the host activity onCreate method after its
      * content view has been set. You should always create new instances when
-     * the host activity is recreated.
+     * the host activity is recreated. Activities which handle configuration
+     * changes themselves should call {@link #onConfigurationChanged(Configuration)}
+     * instead.
+     *
+     * The tint views are only added to the window decor the first time tinting
+     * is enabled, so activities that never enable tinting keep their view
+     * hierarchy unchanged.
      *
      * @param activity The host activity.
      */
-    @TargetApi(19)
     public SystemBarTintManager(Activity activity) {
+        this(activity, RENDER_MODE_VIEWS);
+    }
+
+    /**
+     * Constructor. Call this in the host activity onCreate method after its
+     * content view has been set. You should always create new instances when
+     * the host activity is recreated. Activities which handle configuration
+     * changes themselves should call {@link #onConfigurationChanged(Configuration)}
+     * instead.
+     *
+     * @param activity The host activity.
+     * @param renderMode How the tints are rendered, either {@link #RENDER_MODE_VIEWS}
+     *                   or {@link #RENDER_MODE_OVERLAY}.
+     * @see #SystemBarTintManager(Activity)
+     */
+    @TargetApi(19)
+    public SystemBarTintManager(Activity activity, int renderMode) {
 
         Window win = activity.getWindow();
-        ViewGroup decorViewGroup = (ViewGroup) win.getDecorView();
+        mActivity = activity;
+        mDecorViewGroup = (ViewGroup) win.getDecorView();
+
+        if (renderMode == RENDER_MODE_OVERLAY
+                && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            TintOverlayDrawable overlay = new TintOverlayDrawable(mDecorViewGroup);
+            mStatusBarTint = new BarTint.OverlayTint(this, overlay, TintOverlayDrawable.LAYER_STATUS_BAR);
+            mNavBarTint = new BarTint.OverlayTint(this, overlay, TintOverlayDrawable.LAYER_NAV_BAR);
+        } else {
+            mStatusBarTint = new BarTint.ViewTint(this, activity, mDecorViewGroup);
+            mNavBarTint = new BarTint.ViewTint(this, activity, mDecorViewGroup);
+        }
 
+        long start = beginPhase("SystemBarTint:themeCheck");
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
             // check theme attrs
-            int[] attrs = {android.R.attr.windowTranslucentStatus,
-                    android.R.attr.windowTranslucentNavigation};
-            TypedArray a = activity.obtainStyledAttributes(attrs);
-            try {
-                mStatusBarAvailable = a.getBoolean(0, false);
-                mNavBarAvailable = a.getBoolean(1, false);
-            } finally {
-                a.recycle();
-            }
+            SystemBarConfig.ThemeAttributes theme = SystemBarConfig.getThemeAttributes(activity);
+            mStatusBarAvailable = theme.mTranslucentStatus;
+            mNavBarAvailable = theme.mTranslucentNavigation;
 
             // check window flags
             WindowManager.LayoutParams winParams = win.getAttributes();
@@ -112,18 +163,15 @@ public class SystemBarTintManager {
                 mNavBarAvailable = true;
             }
         }
+        endPhase(TintMetrics.PHASE_THEME_CHECK, start);
 
-        mConfig = new SystemBarConfig(activity, mStatusBarAvailable, mNavBarAvailable);
         // device might not have virtual navigation keys
-        if (!mConfig.hasNavigtionBar()) {
-            mNavBarAvailable = false;
-        }
-
-        if (mStatusBarAvailable) {
-            setupStatusBarView(activity, decorViewGroup);
-        }
         if (mNavBarAvailable) {
-            setupNavBarView(activity, decorViewGroup);
+            start = beginPhase("SystemBarTint:config");
+            if (!getConfig().hasNavigtionBar()) {
+                mNavBarAvailable = false;
+            }
+            endPhase(TintMetrics.PHASE_CONFIG, start);
         }
 
     }
@@ -140,7 +188,15 @@ public class SystemBarTintManager {
     public void setStatusBarTintEnabled(boolean enabled) {
         mStatusBarTintEnabled = enabled;
         if (mStatusBarAvailable) {
-            mStatusBarTintView.setVisibility(enabled ? View.VISIBLE : View.GONE);
+            if (!mStatusBarTint.isAttached()) {
+                if (!enabled) {
+                    return;
+                }
+                long start = beginPhase("SystemBarTint:viewSetup");
+                mStatusBarTint.attach(createStatusBarLayoutParams());
+                endPhase(TintMetrics.PHASE_VIEW_SETUP, start);
+            }
+            mStatusBarTint.setVisible(enabled);
         }
     }
 
@@ -156,7 +212,15 @@ public class SystemBarTintManager {
     public void setNavigationBarTintEnabled(boolean enabled) {
         mNavBarTintEnabled = enabled;
         if (mNavBarAvailable) {
-            mNavBarTintView.setVisibility(enabled ? View.VISIBLE : View.GONE);
+            if (!mNavBarTint.isAttached()) {
+                if (!enabled) {
+                    return;
+                }
+                long start = beginPhase("SystemBarTint:viewSetup");
+                mNavBarTint.attach(createNavBarLayoutParams());
+                endPhase(TintMetrics.PHASE_VIEW_SETUP, start);
+            }
+            mNavBarTint.setVisible(enabled);
         }
     }
 
@@ -170,6 +234,41 @@ public class SystemBarTintManager {
         setNavigationBarTintColor(color);
     }
 
+    /**
+     * Animate the tint of all system UI bars from their current color to the
+     * specified color. Any running tint animation is interrupted and continues
+     * from its current value.
+     *
+     * @param color The color of the background tint.
+     * @param duration The length of the animation in milliseconds.
+     */
+    public void animateTintColor(int color, long duration) {
+        animateTintColor(color, duration, null);
+    }
+
+    /**
+     * Animate the tint of all system UI bars from their current color to the
+     * specified color. Any running tint animation is interrupted and continues
+     * from its current value.
+     *
+     * @param color The color of the background tint.
+     * @param duration The length of the animation in milliseconds.
+     * @param interpolator The interpolator to use, or null for the default
+     *                     accelerate/decelerate interpolation.
+     */
+    public void animateTintColor(int color, long duration, Interpolator interpolator) {
+        animateStatusBarTintColor(color, duration, interpolator);
+        animateNavigationBarTintColor(color, duration, interpolator);
+    }
+
+    /**
+     * Cancel any running tint color animations, leaving the bars at their current color.
+     */
+    public void cancelTintAnimations() {
+        cancelStatusBarTintAnimation();
+        cancelNavigationBarTintAnimation();
+    }
+
     /**
      * Apply the specified drawable or color resource to all system UI bars.
      *
@@ -190,6 +289,17 @@ public class SystemBarTintManager {
         setNavigationBarTintDrawable(drawable);
     }
 
+    /**
+     * Apply a gradient scrim of the specified color to all system UI bars.
+     *
+     * @param color The color at the screen edge, including its alpha.
+     * @param style Either {@link #SCRIM_LINEAR} or {@link #SCRIM_EASED}.
+     */
+    public void setTintScrim(int color, int style) {
+        setStatusBarTintScrim(color, style);
+        setNavigationBarTintScrim(color, style);
+    }
+
     /**
      * Apply the specified alpha to all system UI bars.
      *
@@ -207,7 +317,50 @@ public class SystemBarTintManager {
      */
     public void setStatusBarTintColor(int color) {
         if (mStatusBarAvailable) {
-            mStatusBarTintView.setBackgroundColor(color);
+            cancelStatusBarTintAnimation();
+            mStatusBarTint.setColor(color);
+        }
+    }
+
+    /**
+     * Animate the tint of the system status bar from its current color to the
+     * specified color. A running animation is interrupted and continues from
+     * its current value.
+     *
+     * @param color The color of the background tint.
+     * @param duration The length of the animation in milliseconds.
+     */
+    public void animateStatusBarTintColor(int color, long duration) {
+        animateStatusBarTintColor(color, duration, null);
+    }
+
+    /**
+     * Animate the tint of the system status bar from its current color to the
+     * specified color. A running animation is interrupted and continues from
+     * its current value.
+     *
+     * @param color The color of the background tint.
+     * @param duration The length of the animation in milliseconds.
+     * @param interpolator The interpolator to use, or null for the default
+     *                     accelerate/decelerate interpolation.
+     */
+    public void animateStatusBarTintColor(int color, long duration, Interpolator interpolator) {
+        if (mStatusBarAvailable) {
+            if (!mStatusBarTint.isAttached()) {
+                // nothing is drawn yet, so there is nothing to animate
+                setStatusBarTintColor(color);
+                return;
+            }
+            if (mStatusBarAnimator == null) {
+                mStatusBarAnimator = new TintColorAnimator(mStatusBarTint);
+            }
+            mStatusBarAnimator.start(color, duration, interpolator);
+        }
+    }
+
+    private void cancelStatusBarTintAnimation() {
+        if (mStatusBarAnimator != null) {
+            mStatusBarAnimator.cancel();
         }
     }
 
@@ -218,7 +371,8 @@ public class SystemBarTintManager {
      */
     public void setStatusBarTintResource(int res) {
         if (mStatusBarAvailable) {
-            mStatusBarTintView.setBackgroundResource(res);
+            cancelStatusBarTintAnimation();
+            mStatusBarTint.setResource(res);
         }
     }
 
@@ -227,10 +381,26 @@ public class SystemBarTintManager {
      *
      * @param drawable The drawable to use as the background, or null to remove it.
      */
-    @SuppressWarnings("deprecation")
     public void setStatusBarTintDrawable(Drawable drawable) {
         if (mStatusBarAvailable) {
-            mStatusBarTintView.setBackgroundDrawable(drawable);
+            cancelStatusBarTintAnimation();
+            mStatusBarTint.setDrawable(drawable);
+        }
+    }
+
+    /**
+     * Apply a gradient scrim to the system status bar, fading the specified color out
+     * from the top of the screen over the height of the bar. Scrims are cached and
+     * shared between managers.
+     *
+     * @param color The color at the screen edge, including its alpha.
+     * @param style Either {@link #SCRIM_LINEAR} or {@link #SCRIM_EASED}.
+     */
+    public void setStatusBarTintScrim(int color, int style) {
+        if (mStatusBarAvailable) {
+            cancelStatusBarTintAnimation();
+            mStatusBarTint.setScrim(color, style, TintDrawableCache.getScrim(mActivity, color,
+                    getConfig().getStatusBarHeight(), style, TintDrawableCache.EDGE_TOP));
         }
     }
 
@@ -242,7 +412,7 @@ public class SystemBarTintManager {
     @TargetApi(11)
     public void setStatusBarAlpha(float alpha) {
         if (mStatusBarAvailable && Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
-            mStatusBarTintView.setAlpha(alpha);
+            mStatusBarTint.setAlpha(alpha);
         }
     }
 
@@ -253,7 +423,50 @@ public class SystemBarTintManager {
      */
     public void setNavigationBarTintColor(int color) {
         if (mNavBarAvailable) {
-            mNavBarTintView.setBackgroundColor(color);
+            cancelNavigationBarTintAnimation();
+            mNavBarTint.setColor(color);
+        }
+    }
+
+    /**
+     * Animate the tint of the system navigation bar from its current color to the
+     * specified color. A running animation is interrupted and continues from
+     * its current value.
+     *
+     * @param color The color of the background tint.
+     * @param duration The length of the animation in milliseconds.
+     */
+    public void animateNavigationBarTintColor(int color, long duration) {
+        animateNavigationBarTintColor(color, duration, null);
+    }
+
+    /**
+     * Animate the tint of the system navigation bar from its current color to the
+     * specified color. A running animation is interrupted and continues from
+     * its current value.
+     *
+     * @param color The color of the background tint.
+     * @param duration The length of the animation in milliseconds.
+     * @param interpolator The interpolator to use, or null for the default
+     *                     accelerate/decelerate interpolation.
+     */
+    public void animateNavigationBarTintColor(int color, long duration, Interpolator interpolator) {
+        if (mNavBarAvailable) {
+            if (!mNavBarTint.isAttached()) {
+                // nothing is drawn yet, so there is nothing to animate
+                setNavigationBarTintColor(color);
+                return;
+            }
+            if (mNavBarAnimator == null) {
+                mNavBarAnimator = new TintColorAnimator(mNavBarTint);
+            }
+            mNavBarAnimator.start(color, duration, interpolator);
+        }
+    }
+
+    private void cancelNavigationBarTintAnimation() {
+        if (mNavBarAnimator != null) {
+            mNavBarAnimator.cancel();
         }
     }
 
@@ -264,7 +477,8 @@ public class SystemBarTintManager {
      */
     public void setNavigationBarTintResource(int res) {
         if (mNavBarAvailable) {
-            mNavBarTintView.setBackgroundResource(res);
+            cancelNavigationBarTintAnimation();
+            mNavBarTint.setResource(res);
         }
     }
 
@@ -273,10 +487,34 @@ public class SystemBarTintManager {
      *
      * @param drawable The drawable to use as the background, or null to remove it.
      */
-    @SuppressWarnings("deprecation")
     public void setNavigationBarTintDrawable(Drawable drawable) {
         if (mNavBarAvailable) {
-            mNavBarTintView.setBackgroundDrawable(drawable);
+            cancelNavigationBarTintAnimation();
+            mNavBarTint.setDrawable(drawable);
+        }
+    }
+
+    /**
+     * Apply a gradient scrim to the system navigation bar, fading the specified color
+     * out from the edge of the screen over the size of the bar. Scrims are cached and
+     * shared between managers.
+     *
+     * @param color The color at the screen edge, including its alpha.
+     * @param style Either {@link #SCRIM_LINEAR} or {@link #SCRIM_EASED}.
+     */
+    public void setNavigationBarTintScrim(int color, int style) {
+        if (mNavBarAvailable) {
+            SystemBarConfig config = getConfig();
+            Drawable scrim;
+            if (config.isNavigationAtBottom()) {
+                scrim = TintDrawableCache.getScrim(mActivity, color, config.getNavigationBarHeight(),
+                        style, TintDrawableCache.EDGE_BOTTOM);
+            } else {
+                scrim = TintDrawableCache.getScrim(mActivity, color, config.getNavigationBarWidth(),
+                        style, TintDrawableCache.EDGE_RIGHT);
+            }
+            cancelNavigationBarTintAnimation();
+            mNavBarTint.setScrim(color, style, scrim);
         }
     }
 
@@ -288,7 +526,192 @@ public class SystemBarTintManager {
     @TargetApi(11)
     public void setNavigationBarAlpha(float alpha) {
         if (mNavBarAvailable && Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
-            mNavBarTintView.setAlpha(alpha);
+            mNavBarTint.setAlpha(alpha);
+        }
+    }
+
+    /**
+     * Tint the system UI bars with the average colors of the regions of an image that
+     * they cover, assuming the image is stretched over the whole window. A small copy
+     * of the image is made before this method returns and is averaged on a background
+     * thread, and the colors are applied when ready, unless another image is requested
+     * first. Results are cached until the bitmap is modified.
+     *
+     * @param bitmap The image displayed behind the bars. It may be recycled or reused
+     *               as soon as this method returns.
+     */
+    public void setTintFromBitmap(Bitmap bitmap) {
+        setTintFromBitmap(bitmap, 0);
+    }
+
+    /**
+     * Tint the system UI bars with the average colors of the regions of an image that
+     * they cover, animating from their current colors. See {@link #setTintFromBitmap(Bitmap)}.
+     *
+     * @param bitmap The image displayed behind the bars.
+     * @param duration The length of the color transition in milliseconds, or 0 to
+     *                 apply the colors immediately.
+     */
+    public void setTintFromBitmap(Bitmap bitmap, long duration) {
+        if (!mStatusBarAvailable && !mNavBarAvailable) {
+            return;
+        }
+        SystemBarConfig config = getConfig();
+        int width = mDecorViewGroup.getWidth();
+        int height = mDecorViewGroup.getHeight();
+        if (width == 0 || height == 0) {
+            // not laid out yet, assume the window fills the display
+            DisplayMetrics metrics = mActivity.getResources().getDisplayMetrics();
+            width = metrics.widthPixels;
+            height = metrics.heightPixels;
+        }
+        boolean navAtBottom = config.isNavigationAtBottom();
+        int statusPermille = mStatusBarAvailable ? config.getStatusBarHeight() * 1000 / height : 0;
+        int navPermille = 0;
+        if (mNavBarAvailable) {
+            navPermille = navAtBottom ? config.getNavigationBarHeight() * 1000 / height
+                    : config.getNavigationBarWidth() * 1000 / width;
+        }
+        BitmapTintExtractor.extract(this, ++mBitmapTintRequest, bitmap, duration,
+                statusPermille, navPermille, navAtBottom);
+    }
+
+    /**
+     * Continuously tint the system UI bars with the average color of the content drawn
+     * beneath them. The content is sampled at most once per interval, and only after it
+     * has been redrawn. See {@link ContentTintSampler}.
+     *
+     * @param contentView The view drawn beneath the bars, usually the content view of
+     *                    the activity. It must not contain the tint views.
+     * @param interval The minimum time between two samples, in milliseconds.
+     * @return The sampler, call {@link ContentTintSampler#stop()} to release it.
+     */
+    public ContentTintSampler startContentSampling(View contentView, long interval) {
+        return new ContentTintSampler(this, contentView, interval);
+    }
+
+    /**
+     * Render the system UI bar tints as a blurred copy of the content beneath them.
+     * See {@link BlurBackdrop}.
+     *
+     * @param contentView The view drawn beneath the bars, usually the content view of
+     *                    the activity. It must not contain the tint views.
+     * @return The backdrop, call {@link BlurBackdrop#stop()} to release it.
+     */
+    public BlurBackdrop startBlurBackdrop(View contentView) {
+        return new BlurBackdrop(this, contentView);
+    }
+
+    int getStatusBarTintColor() {
+        return mStatusBarTint.getColor();
+    }
+
+    int getNavigationBarTintColor() {
+        return mNavBarTint.getColor();
+    }
+
+    /**
+     * Called on the main thread with the colors extracted for a bitmap tint request.
+     */
+    void onBitmapTintExtracted(int request, int statusBarColor, int navBarColor, long duration) {
+        if (request != mBitmapTintRequest) {
+            // superseded by a later request
+            return;
+        }
+        if (duration > 0) {
+            animateStatusBarTintColor(statusBarColor, duration);
+            animateNavigationBarTintColor(navBarColor, duration);
+        } else {
+            setStatusBarTintColor(statusBarColor);
+            setNavigationBarTintColor(navBarColor);
+        }
+    }
+
+    /**
+     * Start a batch of tint changes. Changes made through the returned editor are
+     * not applied until {@link Editor#apply()} is called, at which point only the
+     * values that differ from the current tint are applied. The same editor instance
+     * is returned by every call, so apply or discard it before editing again.
+     *
+     * @return The editor for this manager.
+     */
+    public Editor edit() {
+        if (mEditor == null) {
+            mEditor = new Editor();
+        }
+        mEditor.clear();
+        return mEditor;
+    }
+
+    /**
+     * Link the system bar tints to the scroll position of a scroll view. Configure the
+     * offset, color and alpha ranges on the returned binding.
+     *
+     * @param scrollView The scroll view to follow.
+     * @return The binding, call {@link ScrollTintBinding#unbind()} to release it.
+     */
+    public ScrollTintBinding bindTintToScroll(ScrollView scrollView) {
+        return ScrollTintBinding.forScrollView(this, scrollView);
+    }
+
+    /**
+     * Link the system bar tints to the scroll position of a list or grid view, measured
+     * from the top of its first item. Configure the offset, color and alpha ranges on
+     * the returned binding.
+     *
+     * @param listView The list view to follow.
+     * @return The binding, call {@link ScrollTintBinding#unbind()} to release it.
+     */
+    public ScrollTintBinding bindTintToScroll(AbsListView listView) {
+        return ScrollTintBinding.forListView(this, listView);
+    }
+
+    /**
+     * Link the system bar tints to a custom scroll offset. Call
+     * {@link ScrollTintBinding#notifyScrollChanged()} whenever the offset changes.
+     *
+     * @param source The source of the scroll offset.
+     * @return The binding, call {@link ScrollTintBinding#unbind()} to release it.
+     */
+    public ScrollTintBinding bindTintToScroll(ScrollTintBinding.OffsetSource source) {
+        return new ScrollTintBinding(this, source);
+    }
+
+    /**
+     * Update the tints for a configuration change handled by the host activity, for
+     * example a rotation in an activity declaring
+     * {@code android:configChanges="orientation|screenSize"}. Call this from the
+     * activity onConfigurationChanged method. Only the configuration values which
+     * depend on the changed configuration are recomputed, and the existing tints
+     * are moved without being re-added to the window. Gradient scrims are rendered
+     * again for the new size and position of their bars.
+     *
+     * @param newConfig The new configuration passed to the activity.
+     */
+    public void onConfigurationChanged(Configuration newConfig) {
+        if (mConfig == null) {
+            // nothing has been computed or laid out yet
+            return;
+        }
+        SystemBarConfig config = SystemBarConfig.obtain(mActivity, mConfig);
+        if (config == mConfig) {
+            return;
+        }
+        mConfig = config;
+        if (mStatusBarTint.isAttached()) {
+            setStatusBarLayoutParams(mStatusBarTint.getLayoutParams());
+            mStatusBarTint.onLayoutParamsChanged();
+        }
+        if (mNavBarTint.isAttached()) {
+            setNavBarLayoutParams(mNavBarTint.getLayoutParams());
+            mNavBarTint.onLayoutParamsChanged();
+        }
+        // scrims are rendered for the size and edge of a bar, so render them again
+        if (mStatusBarTint.hasScrim()) {
+            setStatusBarTintScrim(mStatusBarTint.getScrimColor(), mStatusBarTint.getScrimStyle());
+        }
+        if (mNavBarTint.hasScrim()) {
+            setNavigationBarTintScrim(mNavBarTint.getScrimColor(), mNavBarTint.getScrimStyle());
         }
     }
 
@@ -298,9 +721,46 @@ public class SystemBarTintManager {
      * @return The system bar configuration for the current device configuration.
      */
     public SystemBarConfig getConfig() {
+        if (mConfig == null) {
+            mConfig = SystemBarConfig.obtain(mActivity, mStatusBarAvailable, mNavBarAvailable);
+        }
         return mConfig;
     }
 
+    /**
+     * Resolve the process-wide system properties and resource identifiers used by
+     * the manager so that the first instance created does not pay for them. This method
+     * is thread safe and may be called from a background thread, for example from an
+     * executor started in your application's onCreate method.
+     *
+     * @param context Any context, only its application context is retained.
+     */
+    public static void prewarm(Context context) {
+        NavBarOverride.get();
+        SystemBarConfig.prewarm(context.getApplicationContext().getResources());
+    }
+
+    /**
+     * Register a listener for the phase timings and tint update counts of all managers,
+     * replacing any previous listener. While a listener is registered, each measured
+     * phase is also emitted as an {@link android.os.Trace} section on API 18 and above.
+     *
+     * @param metrics The listener, or null to stop measuring.
+     */
+    public static void setMetrics(TintMetrics metrics) {
+        sMetrics = metrics;
+    }
+
+    /**
+     * Discard all cached system bar configurations. Configurations are shared between
+     * manager instances created for the same orientation, smallest width, density,
+     * display and theme. Call this from your application's onConfigurationChanged
+     * method if you need to release configurations that are no longer current.
+     */
+    public static void invalidateConfigCache() {
+        SystemBarConfig.clearCache();
+    }
+
     /**
      * Is tinting enabled for the system status bar?
      *
@@ -319,38 +779,358 @@ public class SystemBarTintManager {
         return mNavBarTintEnabled;
     }
 
-    private void setupStatusBarView(Context context, ViewGroup decorViewGroup) {
-        mStatusBarTintView = new View(context);
-        LayoutParams params = new LayoutParams(LayoutParams.MATCH_PARENT, mConfig.getStatusBarHeight());
+    @TargetApi(18)
+    private static long beginPhase(String sectionName) {
+        if (sMetrics == null) {
+            return 0;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.beginSection(sectionName);
+        }
+        return System.nanoTime();
+    }
+
+    @TargetApi(18)
+    private void endPhase(int phase, long start) {
+        if (start == 0) {
+            return;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.endSection();
+        }
+        TintMetrics metrics = sMetrics;
+        if (metrics != null) {
+            metrics.onPhase(this, phase, System.nanoTime() - start);
+        }
+    }
+
+    // the bar tints are exposed to tests in this package
+
+    BarTint getStatusBarTint() {
+        return mStatusBarTint;
+    }
+
+    BarTint getNavigationBarTint() {
+        return mNavBarTint;
+    }
+
+    /**
+     * Called by the bar tints for every update, with whether the update changed
+     * what is drawn.
+     */
+    void onTintUpdated(boolean invalidated) {
+        TintMetrics metrics = sMetrics;
+        if (metrics != null) {
+            mTintUpdateCount++;
+            if (invalidated) {
+                mInvalidationCount++;
+            }
+            metrics.onTintUpdate(this, mTintUpdateCount, mInvalidationCount);
+        }
+    }
+
+    /**
+     * Batches changes to the system bar tints. Obtain an instance with
+     * {@link SystemBarTintManager#edit()}, chain the required changes and then
+     * call {@link #apply()}. Unchanged values cause no invalidation.
+     */
+    public final class Editor {
+
+        private final PendingTint mStatusBar = new PendingTint();
+        private final PendingTint mNavBar = new PendingTint();
+
+        private Editor() {
+        }
+
+        /**
+         * See {@link SystemBarTintManager#setTintColor(int)}.
+         */
+        public Editor setTintColor(int color) {
+            return setStatusBarTintColor(color).setNavigationBarTintColor(color);
+        }
+
+        /**
+         * See {@link SystemBarTintManager#setTintResource(int)}.
+         */
+        public Editor setTintResource(int res) {
+            return setStatusBarTintResource(res).setNavigationBarTintResource(res);
+        }
+
+        /**
+         * See {@link SystemBarTintManager#setTintDrawable(Drawable)}.
+         */
+        public Editor setTintDrawable(Drawable drawable) {
+            return setStatusBarTintDrawable(drawable).setNavigationBarTintDrawable(drawable);
+        }
+
+        /**
+         * See {@link SystemBarTintManager#setTintAlpha(float)}.
+         */
+        public Editor setTintAlpha(float alpha) {
+            return setStatusBarAlpha(alpha).setNavigationBarAlpha(alpha);
+        }
+
+        /**
+         * See {@link SystemBarTintManager#setStatusBarTintEnabled(boolean)}.
+         */
+        public Editor setStatusBarTintEnabled(boolean enabled) {
+            mStatusBar.setEnabled(enabled);
+            return this;
+        }
+
+        /**
+         * See {@link SystemBarTintManager#setStatusBarTintColor(int)}.
+         */
+        public Editor setStatusBarTintColor(int color) {
+            mStatusBar.setColor(color);
+            return this;
+        }
+
+        /**
+         * See {@link SystemBarTintManager#setStatusBarTintResource(int)}.
+         */
+        public Editor setStatusBarTintResource(int res) {
+            mStatusBar.setResource(res);
+            return this;
+        }
+
+        /**
+         * See {@link SystemBarTintManager#setStatusBarTintDrawable(Drawable)}.
+         */
+        public Editor setStatusBarTintDrawable(Drawable drawable) {
+            mStatusBar.setDrawable(drawable);
+            return this;
+        }
+
+        /**
+         * See {@link SystemBarTintManager#setStatusBarAlpha(float)}.
+         */
+        public Editor setStatusBarAlpha(float alpha) {
+            mStatusBar.setAlpha(alpha);
+            return this;
+        }
+
+        /**
+         * See {@link SystemBarTintManager#setNavigationBarTintEnabled(boolean)}.
+         */
+        public Editor setNavigationBarTintEnabled(boolean enabled) {
+            mNavBar.setEnabled(enabled);
+            return this;
+        }
+
+        /**
+         * See {@link SystemBarTintManager#setNavigationBarTintColor(int)}.
+         */
+        public Editor setNavigationBarTintColor(int color) {
+            mNavBar.setColor(color);
+            return this;
+        }
+
+        /**
+         * See {@link SystemBarTintManager#setNavigationBarTintResource(int)}.
+         */
+        public Editor setNavigationBarTintResource(int res) {
+            mNavBar.setResource(res);
+            return this;
+        }
+
+        /**
+         * See {@link SystemBarTintManager#setNavigationBarTintDrawable(Drawable)}.
+         */
+        public Editor setNavigationBarTintDrawable(Drawable drawable) {
+            mNavBar.setDrawable(drawable);
+            return this;
+        }
+
+        /**
+         * See {@link SystemBarTintManager#setNavigationBarAlpha(float)}.
+         */
+        public Editor setNavigationBarAlpha(float alpha) {
+            mNavBar.setAlpha(alpha);
+            return this;
+        }
+
+        /**
+         * Apply the changed values. Backgrounds and alpha are applied before tints
+         * are enabled, so a tint attached by this call is set up only once.
+         */
+        public void apply() {
+            PendingTint p = mStatusBar;
+            switch (p.mBackground) {
+            case PendingTint.BACKGROUND_COLOR:
+                SystemBarTintManager.this.setStatusBarTintColor(p.mColor);
+                break;
+            case PendingTint.BACKGROUND_RESOURCE:
+                SystemBarTintManager.this.setStatusBarTintResource(p.mResource);
+                break;
+            case PendingTint.BACKGROUND_DRAWABLE:
+                SystemBarTintManager.this.setStatusBarTintDrawable(p.mDrawable);
+                break;
+            }
+            if (p.mAlphaSet) {
+                SystemBarTintManager.this.setStatusBarAlpha(p.mAlpha);
+            }
+            if (p.mEnabledSet && p.mEnabled != mStatusBarTintEnabled) {
+                SystemBarTintManager.this.setStatusBarTintEnabled(p.mEnabled);
+            }
+
+            p = mNavBar;
+            switch (p.mBackground) {
+            case PendingTint.BACKGROUND_COLOR:
+                SystemBarTintManager.this.setNavigationBarTintColor(p.mColor);
+                break;
+            case PendingTint.BACKGROUND_RESOURCE:
+                SystemBarTintManager.this.setNavigationBarTintResource(p.mResource);
+                break;
+            case PendingTint.BACKGROUND_DRAWABLE:
+                SystemBarTintManager.this.setNavigationBarTintDrawable(p.mDrawable);
+                break;
+            }
+            if (p.mAlphaSet) {
+                SystemBarTintManager.this.setNavigationBarAlpha(p.mAlpha);
+            }
+            if (p.mEnabledSet && p.mEnabled != mNavBarTintEnabled) {
+                SystemBarTintManager.this.setNavigationBarTintEnabled(p.mEnabled);
+            }
+
+            clear();
+        }
+
+        private void clear() {
+            mStatusBar.clear();
+            mNavBar.clear();
+        }
+
+    }
+
+    /**
+     * Changes to one bar recorded by an {@link Editor}.
+     */
+    private static class PendingTint {
+
+        private static final int BACKGROUND_NONE = 0;
+        private static final int BACKGROUND_COLOR = 1;
+        private static final int BACKGROUND_RESOURCE = 2;
+        private static final int BACKGROUND_DRAWABLE = 3;
+
+        private int mBackground;
+        private int mColor;
+        private int mResource;
+        private Drawable mDrawable;
+        private boolean mAlphaSet;
+        private float mAlpha;
+        private boolean mEnabledSet;
+        private boolean mEnabled;
+
+        private void setColor(int color) {
+            mBackground = BACKGROUND_COLOR;
+            mColor = color;
+            mDrawable = null;
+        }
+
+        private void setResource(int res) {
+            mBackground = BACKGROUND_RESOURCE;
+            mResource = res;
+            mDrawable = null;
+        }
+
+        private void setDrawable(Drawable drawable) {
+            mBackground = BACKGROUND_DRAWABLE;
+            mDrawable = drawable;
+        }
+
+        private void setAlpha(float alpha) {
+            mAlphaSet = true;
+            mAlpha = alpha;
+        }
+
+        private void setEnabled(boolean enabled) {
+            mEnabledSet = true;
+            mEnabled = enabled;
+        }
+
+        private void clear() {
+            mBackground = BACKGROUND_NONE;
+            mDrawable = null;
+            mAlphaSet = false;
+            mEnabledSet = false;
+        }
+
+    }
+
+    private LayoutParams createStatusBarLayoutParams() {
+        LayoutParams params = new LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.MATCH_PARENT);
+        setStatusBarLayoutParams(params);
+        return params;
+    }
+
+    private void setStatusBarLayoutParams(LayoutParams params) {
+        SystemBarConfig config = getConfig();
+        params.width = LayoutParams.MATCH_PARENT;
+        params.height = config.getStatusBarHeight();
         params.gravity = Gravity.TOP;
-        if (mNavBarAvailable && !mConfig.isNavigationAtBottom()) {
-            params.rightMargin = mConfig.getNavigationBarWidth();
+        if (mNavBarAvailable && !config.isNavigationAtBottom()) {
+            params.rightMargin = config.getNavigationBarWidth();
+        } else {
+            params.rightMargin = 0;
         }
-        mStatusBarTintView.setLayoutParams(params);
-        mStatusBarTintView.setBackgroundColor(DEFAULT_TINT_COLOR);
-        mStatusBarTintView.setVisibility(View.GONE);
-        decorViewGroup.addView(mStatusBarTintView);
     }
 
-    private void setupNavBarView(Context context, ViewGroup decorViewGroup) {
-        mNavBarTintView = new View(context);
-        LayoutParams params;
-        if (mConfig.isNavigationAtBottom()) {
-            params = new LayoutParams(LayoutParams.MATCH_PARENT, mConfig.getNavigationBarHeight());
+    private LayoutParams createNavBarLayoutParams() {
+        LayoutParams params = new LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.MATCH_PARENT);
+        setNavBarLayoutParams(params);
+        return params;
+    }
+
+    private void setNavBarLayoutParams(LayoutParams params) {
+        SystemBarConfig config = getConfig();
+        if (config.isNavigationAtBottom()) {
+            params.width = LayoutParams.MATCH_PARENT;
+            params.height = config.getNavigationBarHeight();
             params.gravity = Gravity.BOTTOM;
         } else {
-            params = new LayoutParams(mConfig.getNavigationBarWidth(), LayoutParams.MATCH_PARENT);
+            params.width = config.getNavigationBarWidth();
+            params.height = LayoutParams.MATCH_PARENT;
             params.gravity = Gravity.RIGHT;
         }
-        mNavBarTintView.setLayoutParams(params);
-        mNavBarTintView.setBackgroundColor(DEFAULT_TINT_COLOR);
-        mNavBarTintView.setVisibility(View.GONE);
-        decorViewGroup.addView(mNavBarTintView);
+    }
+
+    /**
+     * Lazily holds the system property that can override the presence of the
+     * navigation bar. The reflective lookup happens on first use rather than
+     * when the manager class is loaded.
+     */
+    private static class NavBarOverride {
+
+        private static final String VALUE = read();
+
+        private static String get() {
+            return VALUE;
+        }
+
+        private static String read() {
+            // Android allows a system property to override the presence of the navigation bar.
+            // Used by the emulator.
+            // See https://github.com/android/platform_frameworks_base/blob/master/policy/src/com/android/internal/policy/impl/PhoneWindowManager.java#L1076
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+                try {
+                    Class c = Class.forName("android.os.SystemProperties");
+                    Method m = c.getDeclaredMethod("get", String.class);
+                    m.setAccessible(true);
+                    return (String) m.invoke(null, "qemu.hw.mainkeys");
+                } catch (Throwable e) {
+                    return null;
+                }
+            }
+            return null;
+        }
+
     }
 
     /**
      * Class which describes system bar sizing and other characteristics for the current
-     * device configuration.
+     * device configuration. Values are computed when first requested, so this class
+     * should only be accessed from the main thread.
      *
      */
     public static class SystemBarConfig {
@@ -361,91 +1141,257 @@ public class SystemBarTintManager {
         private static final String NAV_BAR_WIDTH_RES_NAME = "navigation_bar_width";
         private static final String SHOW_NAV_BAR_RES_NAME = "config_showNavigationBar";
 
+        private static final Map<CacheKey, SystemBarConfig> sCache = new HashMap<CacheKey, SystemBarConfig>();
+        private static final Map<Resources.Theme, ThemeAttributes> sThemeAttributes =
+                new WeakHashMap<Resources.Theme, ThemeAttributes>();
+
+        private static final int RES_STATUS_BAR_HEIGHT = 0;
+        private static final int RES_NAV_BAR_HEIGHT = 1;
+        private static final int RES_NAV_BAR_HEIGHT_LANDSCAPE = 2;
+        private static final int RES_NAV_BAR_WIDTH = 3;
+        private static final int RES_SHOW_NAV_BAR = 4;
+
+        private static final String[] RES_NAMES = {STATUS_BAR_HEIGHT_RES_NAME, NAV_BAR_HEIGHT_RES_NAME,
+                NAV_BAR_HEIGHT_LANDSCAPE_RES_NAME, NAV_BAR_WIDTH_RES_NAME, SHOW_NAV_BAR_RES_NAME};
+        private static final String[] RES_TYPES = {"dimen", "dimen", "dimen", "dimen", "bool"};
+
+        // identifiers are fixed for the life of the process, 0 records a failed lookup
+        private static final int RES_ID_UNRESOLVED = -1;
+        private static final int[] sResIds = {RES_ID_UNRESOLVED, RES_ID_UNRESOLVED,
+                RES_ID_UNRESOLVED, RES_ID_UNRESOLVED, RES_ID_UNRESOLVED};
+        private static final int[] sResIdLookups = new int[RES_NAMES.length];
+
+        private static final int RESOLVED_SMALLEST_WIDTH = 1;
+        private static final int RESOLVED_STATUS_BAR_HEIGHT = 1 << 1;
+        private static final int RESOLVED_ACTION_BAR_HEIGHT = 1 << 2;
+        private static final int RESOLVED_SHOW_NAV_BAR = 1 << 3;
+        private static final int RESOLVED_NAV_BAR_HEIGHT = 1 << 4;
+        private static final int RESOLVED_NAV_BAR_WIDTH = 1 << 5;
+
+        private final CacheKey mKey;
         private final boolean mTranslucentStatusBar;
         private final boolean mTranslucentNavBar;
-        private final int mStatusBarHeight;
-        private final int mActionBarHeight;
-        private final boolean mHasNavigationBar;
-        private final int mNavigationBarHeight;
-        private final int mNavigationBarWidth;
         private final boolean mInPortrait;
-        private final float mSmallestWidthDp;
 
-        private SystemBarConfig(Activity activity, boolean translucentStatusBar, boolean traslucentNavBar) {
+        // the config is shared as soon as it is created, so values are computed on
+        // first access from the sources below rather than from the creating activity
+        private final Resources mResources;
+        private final Display mDisplay;
+        private final Context mAppContext;
+        private int mResolved;
+        private int mStatusBarHeight;
+        private int mActionBarHeight;
+        private boolean mShowNavigationBar;
+        private int mNavigationBarHeight;
+        private int mNavigationBarWidth;
+        private float mSmallestWidthDp;
+
+        private SystemBarConfig(Activity activity, CacheKey key, boolean translucentStatusBar, boolean traslucentNavBar) {
             Resources res = activity.getResources();
+            mResources = res;
+            mDisplay = activity.getWindowManager().getDefaultDisplay();
+            mAppContext = activity.getApplicationContext();
+            mKey = key;
             mInPortrait = (res.getConfiguration().orientation == Configuration.ORIENTATION_PORTRAIT);
-            mSmallestWidthDp = getSmallestWidthDp(activity);
-            mStatusBarHeight = getInternalDimensionSize(res, STATUS_BAR_HEIGHT_RES_NAME);
-            mActionBarHeight = getActionBarHeight(activity);
-            mNavigationBarHeight = getNavigationBarHeight(activity);
-            mNavigationBarWidth = getNavigationBarWidth(activity);
-            mHasNavigationBar = (mNavigationBarHeight > 0);
             mTranslucentStatusBar = translucentStatusBar;
             mTranslucentNavBar = traslucentNavBar;
         }
 
-        @TargetApi(14)
-        private int getActionBarHeight(Context context) {
-            int result = 0;
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
-                TypedValue tv = new TypedValue();
-                context.getTheme().resolveAttribute(android.R.attr.actionBarSize, tv, true);
-                result = TypedValue.complexToDimensionPixelSize(tv.data, context.getResources().getDisplayMetrics());
+        /**
+         * Get the configuration for the host activity, reusing a previously created
+         * configuration when one exists for an equivalent device configuration.
+         * Otherwise a new configuration is shared, and each of its values is computed
+         * when it is first requested.
+         */
+        static SystemBarConfig obtain(Activity activity, boolean translucentStatusBar, boolean translucentNavBar) {
+            CacheKey key = new CacheKey(activity, translucentStatusBar, translucentNavBar);
+            SystemBarConfig config;
+            synchronized (sCache) {
+                config = sCache.get(key);
+            }
+            if (config == null) {
+                config = new SystemBarConfig(activity, key, translucentStatusBar, translucentNavBar);
+                publish(config);
+            }
+            return config;
+        }
+
+        /**
+         * Get the configuration for the host activity after a configuration change.
+         * Returns the previous configuration if none of its inputs changed, otherwise
+         * values which do not depend on the changed inputs are carried over from it.
+         */
+        private static SystemBarConfig obtain(Activity activity, SystemBarConfig previous) {
+            CacheKey key = new CacheKey(activity, previous.mTranslucentStatusBar, previous.mTranslucentNavBar);
+            if (key.equals(previous.mKey)) {
+                return previous;
+            }
+            SystemBarConfig config;
+            synchronized (sCache) {
+                config = sCache.get(key);
+            }
+            if (config == null) {
+                config = new SystemBarConfig(activity, key, previous.mTranslucentStatusBar, previous.mTranslucentNavBar);
+                config.retainUnchanged(previous);
+                publish(config);
+            }
+            return config;
+        }
+
+        private static void publish(SystemBarConfig config) {
+            synchronized (sCache) {
+                sCache.put(config.mKey, config);
+            }
+        }
+
+        private void retainUnchanged(SystemBarConfig previous) {
+            if (mKey.mDensityDpi != previous.mKey.mDensityDpi || mKey.mDisplayId != previous.mKey.mDisplayId) {
+                return;
+            }
+            // the presence of the navigation bar and its vertical width do not depend on
+            // orientation, the bar heights do and are always recomputed
+            int retained = previous.mResolved & (RESOLVED_SHOW_NAV_BAR | RESOLVED_NAV_BAR_WIDTH);
+            if (mKey.mSmallestWidthDp == previous.mKey.mSmallestWidthDp) {
+                retained |= previous.mResolved & RESOLVED_SMALLEST_WIDTH;
+            }
+            if (retained != 0) {
+                mShowNavigationBar = previous.mShowNavigationBar;
+                mNavigationBarWidth = previous.mNavigationBarWidth;
+                mSmallestWidthDp = previous.mSmallestWidthDp;
+                setResolved(retained);
+            }
+        }
+
+        private void setResolved(int flag) {
+            mResolved |= flag;
+        }
+
+        private static void prewarm(Resources res) {
+            for (int i = 0; i < RES_NAMES.length; i++) {
+                getResourceId(res, i);
+            }
+        }
+
+        /**
+         * Get the identifier of an internal framework resource, looking it up by name
+         * only the first time it is requested in this process.
+         *
+         * @return The resource identifier, or 0 if the resource does not exist.
+         */
+        private static int getResourceId(Resources res, int index) {
+            synchronized (sResIds) {
+                int resourceId = sResIds[index];
+                if (resourceId == RES_ID_UNRESOLVED) {
+                    resourceId = res.getIdentifier(RES_NAMES[index], RES_TYPES[index], "android");
+                    sResIds[index] = resourceId;
+                    sResIdLookups[index]++;
+                }
+                return resourceId;
+            }
+        }
+
+        /**
+         * Get the number of times the named internal resource has been looked up by
+         * identifier in this process. Intended for tests, should never exceed 1.
+         */
+        static int getResourceIdLookupCount(String name) {
+            synchronized (sResIds) {
+                for (int i = 0; i < RES_NAMES.length; i++) {
+                    if (RES_NAMES[i].equals(name)) {
+                        return sResIdLookups[i];
+                    }
+                }
+            }
+            return 0;
+        }
+
+        private static void clearCache() {
+            synchronized (sCache) {
+                sCache.clear();
+            }
+        }
+
+        /**
+         * Get the system bar attributes of the theme applied to the activity, reading
+         * them only the first time that theme is seen. Themes are keyed by the theme
+         * object itself, so a theme chosen with setTheme is read like any other; setTheme
+         * has to be called before the content view is set, and so before a manager exists.
+         */
+        private static ThemeAttributes getThemeAttributes(Activity activity) {
+            Resources.Theme theme = activity.getTheme();
+            synchronized (sThemeAttributes) {
+                ThemeAttributes cached = sThemeAttributes.get(theme);
+                if (cached != null) {
+                    return cached;
+                }
+            }
+            ThemeAttributes result = new ThemeAttributes(activity);
+            synchronized (sThemeAttributes) {
+                sThemeAttributes.put(theme, result);
             }
             return result;
         }
 
         @TargetApi(14)
-        private int getNavigationBarHeight(Context context) {
-            Resources res = context.getResources();
+        private int computeNavigationBarHeight() {
+            Resources res = mResources;
             int result = 0;
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
-                if (hasNavBar(context)) {
-                    String key;
+                if (hasNavBar()) {
+                    int index;
                     if (mInPortrait) {
-                        key = NAV_BAR_HEIGHT_RES_NAME;
+                        index = RES_NAV_BAR_HEIGHT;
                     } else {
-                        key = NAV_BAR_HEIGHT_LANDSCAPE_RES_NAME;
+                        index = RES_NAV_BAR_HEIGHT_LANDSCAPE;
                     }
-                    return getInternalDimensionSize(res, key);
+                    return getInternalDimensionSize(res, index);
                 }
             }
             return result;
         }
 
         @TargetApi(14)
-        private int getNavigationBarWidth(Context context) {
-            Resources res = context.getResources();
+        private int computeNavigationBarWidth() {
+            Resources res = mResources;
             int result = 0;
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
-                if (hasNavBar(context)) {
-                    return getInternalDimensionSize(res, NAV_BAR_WIDTH_RES_NAME);
+                if (hasNavBar()) {
+                    return getInternalDimensionSize(res, RES_NAV_BAR_WIDTH);
                 }
             }
             return result;
         }
 
+        private boolean hasNavBar() {
+            if ((mResolved & RESOLVED_SHOW_NAV_BAR) == 0) {
+                mShowNavigationBar = computeHasNavBar();
+                setResolved(RESOLVED_SHOW_NAV_BAR);
+            }
+            return mShowNavigationBar;
+        }
+
         @TargetApi(14)
-        private boolean hasNavBar(Context context) {
-            Resources res = context.getResources();
-            int resourceId = res.getIdentifier(SHOW_NAV_BAR_RES_NAME, "bool", "android");
+        private boolean computeHasNavBar() {
+            Resources res = mResources;
+            int resourceId = getResourceId(res, RES_SHOW_NAV_BAR);
             if (resourceId != 0) {
                 boolean hasNav = res.getBoolean(resourceId);
-                // check override flag (see static block)
-                if ("1".equals(sNavBarOverride)) {
+                // check override flag (see NavBarOverride)
+                String navBarOverride = NavBarOverride.get();
+                if ("1".equals(navBarOverride)) {
                     hasNav = false;
-                } else if ("0".equals(sNavBarOverride)) {
+                } else if ("0".equals(navBarOverride)) {
                     hasNav = true;
                 }
                 return hasNav;
             } else { // fallback
-                return !ViewConfiguration.get(context).hasPermanentMenuKey();
+                return !ViewConfiguration.get(mAppContext).hasPermanentMenuKey();
             }
         }
 
-        private int getInternalDimensionSize(Resources res, String key) {
+        private int getInternalDimensionSize(Resources res, int index) {
             int result = 0;
-            int resourceId = res.getIdentifier(key, "dimen", "android");
+            int resourceId = getResourceId(res, index);
             if (resourceId > 0) {
                 result = res.getDimensionPixelSize(resourceId);
             }
@@ -453,13 +1399,13 @@ public class SystemBarTintManager {
         }
 
         @SuppressLint("NewApi")
-        private float getSmallestWidthDp(Activity activity) {
+        private float computeSmallestWidthDp() {
             DisplayMetrics metrics = new DisplayMetrics();
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
-                activity.getWindowManager().getDefaultDisplay().getRealMetrics(metrics);
+                mDisplay.getRealMetrics(metrics);
             } else {
                 // TODO this is not correct, but we don't really care pre-kitkat
-                activity.getWindowManager().getDefaultDisplay().getMetrics(metrics);
+                mDisplay.getMetrics(metrics);
             }
             float widthDp = metrics.widthPixels / metrics.density;
             float heightDp = metrics.heightPixels / metrics.density;
@@ -474,7 +1420,15 @@ public class SystemBarTintManager {
          * @return True if navigation should appear at the bottom of the screen, False otherwise.
          */
         public boolean isNavigationAtBottom() {
-            return (mSmallestWidthDp >= 600 || mInPortrait);
+            return (mInPortrait || getSmallestWidthDp() >= 600);
+        }
+
+        private float getSmallestWidthDp() {
+            if ((mResolved & RESOLVED_SMALLEST_WIDTH) == 0) {
+                mSmallestWidthDp = computeSmallestWidthDp();
+                setResolved(RESOLVED_SMALLEST_WIDTH);
+            }
+            return mSmallestWidthDp;
         }
 
         /**
@@ -483,6 +1437,10 @@ public class SystemBarTintManager {
          * @return The height of the status bar (in pixels).
          */
         public int getStatusBarHeight() {
+            if ((mResolved & RESOLVED_STATUS_BAR_HEIGHT) == 0) {
+                mStatusBarHeight = getInternalDimensionSize(mResources, RES_STATUS_BAR_HEIGHT);
+                setResolved(RESOLVED_STATUS_BAR_HEIGHT);
+            }
             return mStatusBarHeight;
         }
 
@@ -492,6 +1450,10 @@ public class SystemBarTintManager {
          * @return The height of the action bar (in pixels).
          */
         public int getActionBarHeight() {
+            if ((mResolved & RESOLVED_ACTION_BAR_HEIGHT) == 0) {
+                mActionBarHeight = mKey.mTheme.getActionBarSize(mResources);
+                setResolved(RESOLVED_ACTION_BAR_HEIGHT);
+            }
             return mActionBarHeight;
         }
 
@@ -501,7 +1463,7 @@ public class SystemBarTintManager {
          * @return True if this device uses soft key navigation, False otherwise.
          */
         public boolean hasNavigtionBar() {
-            return mHasNavigationBar;
+            return (getNavigationBarHeight() > 0);
         }
 
         /**
@@ -511,6 +1473,10 @@ public class SystemBarTintManager {
          * soft navigation keys, this will always return 0.
          */
         public int getNavigationBarHeight() {
+            if ((mResolved & RESOLVED_NAV_BAR_HEIGHT) == 0) {
+                mNavigationBarHeight = computeNavigationBarHeight();
+                setResolved(RESOLVED_NAV_BAR_HEIGHT);
+            }
             return mNavigationBarHeight;
         }
 
@@ -521,6 +1487,10 @@ public class SystemBarTintManager {
          * soft navigation keys, this will always return 0.
          */
         public int getNavigationBarWidth() {
+            if ((mResolved & RESOLVED_NAV_BAR_WIDTH) == 0) {
+                mNavigationBarWidth = computeNavigationBarWidth();
+                setResolved(RESOLVED_NAV_BAR_WIDTH);
+            }
             return mNavigationBarWidth;
         }
 
@@ -531,7 +1501,7 @@ public class SystemBarTintManager {
          * @return The layout inset (in pixels).
          */
         public int getPixelInsetTop(boolean withActionBar) {
-            return (mTranslucentStatusBar ? mStatusBarHeight : 0) + (withActionBar ? mActionBarHeight : 0);
+            return (mTranslucentStatusBar ? getStatusBarHeight() : 0) + (withActionBar ? getActionBarHeight() : 0);
         }
 
         /**
@@ -541,7 +1511,7 @@ public class SystemBarTintManager {
          */
         public int getPixelInsetBottom() {
             if (mTranslucentNavBar && isNavigationAtBottom()) {
-                return mNavigationBarHeight;
+                return getNavigationBarHeight();
             } else {
                 return 0;
             }
@@ -554,12 +1524,146 @@ public class SystemBarTintManager {
          */
         public int getPixelInsetRight() {
             if (mTranslucentNavBar && !isNavigationAtBottom()) {
-                return mNavigationBarWidth;
+                return getNavigationBarWidth();
             } else {
                 return 0;
             }
         }
 
+        /**
+         * The theme attributes read by the manager, which are fixed for a given theme.
+         * The action bar size is kept as the resource or complex value it resolves to,
+         * so it stays correct for the current configuration.
+         */
+        static final class ThemeAttributes {
+
+            final boolean mTranslucentStatus;
+            final boolean mTranslucentNavigation;
+            private final int mActionBarSizeRes;
+            private final int mActionBarSizeData;
+
+            @TargetApi(19)
+            private ThemeAttributes(Activity activity) {
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+                    int[] attrs = {android.R.attr.windowTranslucentStatus,
+                            android.R.attr.windowTranslucentNavigation};
+                    TypedArray a = activity.obtainStyledAttributes(attrs);
+                    try {
+                        mTranslucentStatus = a.getBoolean(0, false);
+                        mTranslucentNavigation = a.getBoolean(1, false);
+                    } finally {
+                        a.recycle();
+                    }
+                } else {
+                    mTranslucentStatus = false;
+                    mTranslucentNavigation = false;
+                }
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+                    TypedValue tv = new TypedValue();
+                    activity.getTheme().resolveAttribute(android.R.attr.actionBarSize, tv, true);
+                    mActionBarSizeRes = tv.resourceId;
+                    mActionBarSizeData = tv.data;
+                } else {
+                    mActionBarSizeRes = 0;
+                    mActionBarSizeData = 0;
+                }
+            }
+
+            private int getActionBarSize(Resources res) {
+                if (mActionBarSizeRes != 0) {
+                    return res.getDimensionPixelSize(mActionBarSizeRes);
+                }
+                return TypedValue.complexToDimensionPixelSize(mActionBarSizeData, res.getDisplayMetrics());
+            }
+
+            @Override
+            public boolean equals(Object o) {
+                if (this == o) {
+                    return true;
+                }
+                if (!(o instanceof ThemeAttributes)) {
+                    return false;
+                }
+                ThemeAttributes other = (ThemeAttributes) o;
+                return mTranslucentStatus == other.mTranslucentStatus
+                        && mTranslucentNavigation == other.mTranslucentNavigation
+                        && mActionBarSizeRes == other.mActionBarSizeRes
+                        && mActionBarSizeData == other.mActionBarSizeData;
+            }
+
+            @Override
+            public int hashCode() {
+                int result = mTranslucentStatus ? 1 : 0;
+                result = 31 * result + (mTranslucentNavigation ? 1 : 0);
+                result = 31 * result + mActionBarSizeRes;
+                result = 31 * result + mActionBarSizeData;
+                return result;
+            }
+
+        }
+
+        /**
+         * Identifies the inputs that can change the computed configuration.
+         */
+        private static final class CacheKey {
+
+            private final int mOrientation;
+            private final int mSmallestWidthDp;
+            private final int mDensityDpi;
+            private final int mDisplayId;
+            private final ThemeAttributes mTheme;
+            private final boolean mTranslucentStatusBar;
+            private final boolean mTranslucentNavBar;
+
+            @TargetApi(13)
+            private CacheKey(Activity activity, boolean translucentStatusBar, boolean translucentNavBar) {
+                Resources res = activity.getResources();
+                Configuration config = res.getConfiguration();
+                mOrientation = config.orientation;
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB_MR2) {
+                    mSmallestWidthDp = config.smallestScreenWidthDp;
+                } else {
+                    mSmallestWidthDp = Configuration.SMALLEST_SCREEN_WIDTH_DP_UNDEFINED;
+                }
+                mDensityDpi = res.getDisplayMetrics().densityDpi;
+                mDisplayId = activity.getWindowManager().getDefaultDisplay().getDisplayId();
+                mTheme = getThemeAttributes(activity);
+                mTranslucentStatusBar = translucentStatusBar;
+                mTranslucentNavBar = translucentNavBar;
+            }
+
+            @Override
+            public boolean equals(Object o) {
+                if (this == o) {
+                    return true;
+                }
+                if (!(o instanceof CacheKey)) {
+                    return false;
+                }
+                CacheKey other = (CacheKey) o;
+                return mOrientation == other.mOrientation
+                        && mSmallestWidthDp == other.mSmallestWidthDp
+                        && mDensityDpi == other.mDensityDpi
+                        && mDisplayId == other.mDisplayId
+                        && mTheme.equals(other.mTheme)
+                        && mTranslucentStatusBar == other.mTranslucentStatusBar
+                        && mTranslucentNavBar == other.mTranslucentNavBar;
+            }
+
+            @Override
+            public int hashCode() {
+                int result = mOrientation;
+                result = 31 * result + mSmallestWidthDp;
+                result = 31 * result + mDensityDpi;
+                result = 31 * result + mDisplayId;
+                result = 31 * result + mTheme.hashCode();
+                result = 31 * result + (mTranslucentStatusBar ? 1 : 0);
+                result = 31 * result + (mTranslucentNavBar ? 1 : 0);
+                return result;
+            }
+
+        }
+
     }
 
 }
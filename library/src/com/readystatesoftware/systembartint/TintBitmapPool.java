@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2013 readyState Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.readystatesoftware.systembartint;
+
+import android.annotation.TargetApi;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Small process-wide pool of the intermediate bitmaps used by the backdrop blur,
+ * so that bitmaps of the sizes in use are reused rather than reallocated when
+ * renderers are recreated, for example after a rotation. The pool is emptied when
+ * the system asks the application to trim its memory.
+ */
+final class TintBitmapPool {
+
+    private static final int MAX_ENTRIES = 6;
+
+    private static final List<Bitmap> sPool = new ArrayList<Bitmap>(MAX_ENTRIES);
+
+    private static boolean sCallbacksRegistered;
+
+    private TintBitmapPool() {
+    }
+
+    /**
+     * Get an ARGB_8888 bitmap of the specified size, reusing a pooled bitmap if one
+     * matches. The contents of a reused bitmap are undefined.
+     */
+    static Bitmap obtain(int width, int height) {
+        synchronized (sPool) {
+            for (int i = sPool.size() - 1; i >= 0; i--) {
+                Bitmap bitmap = sPool.get(i);
+                if (bitmap.getWidth() == width && bitmap.getHeight() == height) {
+                    sPool.remove(i);
+                    return bitmap;
+                }
+            }
+        }
+        return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * Return a bitmap which is no longer drawn or written to the pool. The oldest
+     * pooled bitmap is recycled if the pool is full.
+     */
+    static void release(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) {
+            return;
+        }
+        synchronized (sPool) {
+            if (sPool.size() == MAX_ENTRIES) {
+                sPool.remove(0).recycle();
+            }
+            sPool.add(bitmap);
+        }
+    }
+
+    /**
+     * Recycle all pooled bitmaps.
+     */
+    static void clear() {
+        synchronized (sPool) {
+            for (int i = 0; i < sPool.size(); i++) {
+                sPool.get(i).recycle();
+            }
+            sPool.clear();
+        }
+    }
+
+    /**
+     * Register for memory trim callbacks, once per process, so that pooled bitmaps
+     * are released under memory pressure.
+     */
+    static void ensureCallbacks(Context context) {
+        synchronized (TintBitmapPool.class) {
+            if (!sCallbacksRegistered) {
+                sCallbacksRegistered = true;
+                registerCallbacks(context.getApplicationContext());
+            }
+        }
+    }
+
+    private static void registerCallbacks(Context context) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+            context.registerComponentCallbacks(new TrimCallbacks());
+        }
+    }
+
+    @TargetApi(14)
+    private static class TrimCallbacks implements ComponentCallbacks2 {
+
+        @Override
+        public void onTrimMemory(int level) {
+            if (level >= TRIM_MEMORY_RUNNING_LOW) {
+                clear();
+            }
+        }
+
+        @Override
+        public void onLowMemory() {
+            clear();
+        }
+
+        @Override
+        public void onConfigurationChanged(Configuration newConfig) {
+        }
+
+    }
+
+}
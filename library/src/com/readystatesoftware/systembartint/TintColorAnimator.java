@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2013 readyState Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.readystatesoftware.systembartint;
+
+import android.view.animation.AccelerateDecelerateInterpolator;
+import android.view.animation.Interpolator;
+
+/**
+ * Animates the color of a bar tint between packed ARGB values, updating the tint
+ * once per frame. Allocates nothing once started.
+ */
+class TintColorAnimator implements FrameScheduler.Callback {
+
+    private static final Interpolator DEFAULT_INTERPOLATOR = new AccelerateDecelerateInterpolator();
+
+    private final BarTint mTint;
+    private final FrameScheduler mScheduler;
+    private Interpolator mInterpolator;
+    private int mFromColor;
+    private int mToColor;
+    private long mDurationNanos;
+    private long mStartTimeNanos;
+    private boolean mRunning;
+
+    TintColorAnimator(BarTint tint) {
+        mTint = tint;
+        mScheduler = FrameScheduler.create(this);
+    }
+
+    /**
+     * Start animating from the current tint color to the specified color,
+     * interrupting any animation already running.
+     */
+    void start(int color, long duration, Interpolator interpolator) {
+        mFromColor = mTint.getColor();
+        mToColor = color;
+        mDurationNanos = duration * 1000000L;
+        mInterpolator = (interpolator != null) ? interpolator : DEFAULT_INTERPOLATOR;
+        mStartTimeNanos = -1;
+        mRunning = true;
+        mScheduler.schedule();
+    }
+
+    void cancel() {
+        if (mRunning) {
+            mRunning = false;
+            mScheduler.cancel();
+        }
+    }
+
+    boolean isRunning() {
+        return mRunning;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!mRunning) {
+            return;
+        }
+        if (mStartTimeNanos < 0) {
+            mStartTimeNanos = frameTimeNanos;
+        }
+        float fraction = 1f;
+        if (mDurationNanos > 0) {
+            fraction = Math.min(1f, (frameTimeNanos - mStartTimeNanos) / (float) mDurationNanos);
+        }
+        mTint.setColor(blend(mFromColor, mToColor, mInterpolator.getInterpolation(fraction)));
+        if (fraction < 1f) {
+            mScheduler.schedule();
+        } else {
+            mRunning = false;
+        }
+    }
+
+    /**
+     * Interpolate each channel of two packed ARGB colors.
+     */
+    static int blend(int from, int to, float fraction) {
+        int a = blendChannel(from >>> 24, to >>> 24, fraction);
+        int r = blendChannel((from >> 16) & 0xff, (to >> 16) & 0xff, fraction);
+        int g = blendChannel((from >> 8) & 0xff, (to >> 8) & 0xff, fraction);
+        int b = blendChannel(from & 0xff, to & 0xff, fraction);
+        return (a << 24) | (r << 16) | (g << 8) | b;
+    }
+
+    private static int blendChannel(int from, int to, float fraction) {
+        int value = from + Math.round((to - from) * fraction);
+        return Math.max(0, Math.min(255, value));
+    }
+
+}
@@ -0,0 +1,278 @@
+/*
+ * Copyright (C) 2013 readyState Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.readystatesoftware.systembartint;
+
+import android.annotation.TargetApi;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Process-wide cache of the constant state of tint drawable resources, so that a
+ * resource used by both bars, or by many activities, is only loaded once. Each
+ * caller receives its own drawable created from the shared state. The cache holds
+ * a bounded number of entries and is emptied when the system asks the application
+ * to trim its memory.
+ *
+ * Gradient scrims are kept in a second cache of the same kind. They are rendered
+ * once into a bitmap one pixel thick, which is stretched to the bar by the drawable,
+ * so no gradient shader is built when they are drawn.
+ */
+final class TintDrawableCache {
+
+    private static final int MAX_ENTRIES = 16;
+
+    private static final Map<Key, Drawable.ConstantState> sCache =
+            new LinkedHashMap<Key, Drawable.ConstantState>(MAX_ENTRIES, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, Drawable.ConstantState> eldest) {
+                    return size() > MAX_ENTRIES;
+                }
+            };
+
+    private static final Map<ScrimKey, Drawable.ConstantState> sScrimCache =
+            new LinkedHashMap<ScrimKey, Drawable.ConstantState>(MAX_ENTRIES, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<ScrimKey, Drawable.ConstantState> eldest) {
+                    return size() > MAX_ENTRIES;
+                }
+            };
+
+    static final int EDGE_TOP = 0;
+    static final int EDGE_BOTTOM = 1;
+    static final int EDGE_RIGHT = 2;
+
+    private static boolean sCallbacksRegistered;
+
+    private TintDrawableCache() {
+    }
+
+    /**
+     * Get a drawable for the specified resource, loading it only if its state is not
+     * already cached for the current configuration.
+     */
+    @SuppressWarnings("deprecation")
+    static Drawable getDrawable(Context context, int id) {
+        Resources res = context.getResources();
+        Key key = new Key(id, res);
+        Drawable.ConstantState state;
+        synchronized (sCache) {
+            state = sCache.get(key);
+        }
+        if (state != null) {
+            return state.newDrawable(res);
+        }
+        Drawable drawable = res.getDrawable(id);
+        state = drawable.getConstantState();
+        if (state != null) {
+            // the resources configuration is updated in place, so keep a copy of it
+            key = new Key(id, new Configuration(key.mConfig), key.mDensityDpi);
+            synchronized (sCache) {
+                sCache.put(key, state);
+            }
+            ensureCallbacks(context);
+        }
+        return drawable;
+    }
+
+    /**
+     * Get a scrim which fades the specified color out from one edge of a bar, rendering
+     * it only if it is not already cached.
+     *
+     * @param size The extent of the bar away from the edge, in pixels.
+     * @param style One of the {@code SCRIM_*} constants of {@link SystemBarTintManager}.
+     * @param edge One of the {@code EDGE_*} constants, the edge at which the scrim is opaque.
+     */
+    static Drawable getScrim(Context context, int color, int size, int style, int edge) {
+        Resources res = context.getResources();
+        ScrimKey key = new ScrimKey(color, size, style, edge);
+        Drawable.ConstantState state;
+        synchronized (sScrimCache) {
+            state = sScrimCache.get(key);
+        }
+        if (state != null) {
+            return state.newDrawable(res);
+        }
+        Drawable drawable = new BitmapDrawable(res, createScrimBitmap(color, size, style, edge));
+        state = drawable.getConstantState();
+        if (state != null) {
+            synchronized (sScrimCache) {
+                sScrimCache.put(key, state);
+            }
+            ensureCallbacks(context);
+        }
+        return drawable;
+    }
+
+    private static Bitmap createScrimBitmap(int color, int size, int style, int edge) {
+        size = Math.max(1, size);
+        int alpha = color >>> 24;
+        int rgb = color & 0x00ffffff;
+        int[] pixels = new int[size];
+        for (int i = 0; i < size; i++) {
+            // distance from the opaque edge, sampled at the pixel center
+            float u = 1f - (i + 0.5f) / size;
+            float fraction = (style == SystemBarTintManager.SCRIM_LINEAR) ? u : u * u * (3f - 2f * u);
+            int index = (edge == EDGE_TOP) ? i : size - 1 - i;
+            pixels[index] = (Math.round(alpha * fraction) << 24) | rgb;
+        }
+        boolean vertical = (edge != EDGE_RIGHT);
+        int width = vertical ? 1 : size;
+        int height = vertical ? size : 1;
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        bitmap.setPixels(pixels, 0, width, 0, 0, width, height);
+        return bitmap;
+    }
+
+    static void clear() {
+        synchronized (sCache) {
+            sCache.clear();
+        }
+        synchronized (sScrimCache) {
+            sScrimCache.clear();
+        }
+    }
+
+    private static void ensureCallbacks(Context context) {
+        synchronized (TintDrawableCache.class) {
+            if (!sCallbacksRegistered) {
+                sCallbacksRegistered = true;
+                registerCallbacks(context.getApplicationContext());
+            }
+        }
+    }
+
+    private static void registerCallbacks(Context context) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+            context.registerComponentCallbacks(new TrimCallbacks());
+        }
+    }
+
+    @TargetApi(14)
+    private static class TrimCallbacks implements ComponentCallbacks2 {
+
+        @Override
+        public void onTrimMemory(int level) {
+            if (level >= TRIM_MEMORY_RUNNING_LOW) {
+                clear();
+            }
+        }
+
+        @Override
+        public void onLowMemory() {
+            clear();
+        }
+
+        @Override
+        public void onConfigurationChanged(Configuration newConfig) {
+        }
+
+    }
+
+    /**
+     * A resource id and the full configuration it was loaded for, since a resource
+     * may have alternatives for any configuration qualifier.
+     */
+    private static final class Key {
+
+        private final int mId;
+        private final Configuration mConfig;
+        private final int mDensityDpi;
+
+        private Key(int id, Resources res) {
+            this(id, res.getConfiguration(), res.getDisplayMetrics().densityDpi);
+        }
+
+        private Key(int id, Configuration config, int densityDpi) {
+            mId = id;
+            mConfig = config;
+            mDensityDpi = densityDpi;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return mId == other.mId
+                    && mDensityDpi == other.mDensityDpi
+                    && mConfig.equals(other.mConfig);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = mId;
+            result = 31 * result + mDensityDpi;
+            result = 31 * result + mConfig.hashCode();
+            return result;
+        }
+
+    }
+
+    private static final class ScrimKey {
+
+        private final int mColor;
+        private final int mSize;
+        private final int mStyle;
+        private final int mEdge;
+
+        private ScrimKey(int color, int size, int style, int edge) {
+            mColor = color;
+            mSize = size;
+            mStyle = style;
+            mEdge = edge;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ScrimKey)) {
+                return false;
+            }
+            ScrimKey other = (ScrimKey) o;
+            return mColor == other.mColor
+                    && mSize == other.mSize
+                    && mStyle == other.mStyle
+                    && mEdge == other.mEdge;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = mColor;
+            result = 31 * result + mSize;
+            result = 31 * result + mStyle;
+            result = 31 * result + mEdge;
+            return result;
+        }
+
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2013 readyState Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.readystatesoftware.systembartint;
+
+import java.io.PrintWriter;
+
+/**
+ * {@link TintMetrics} implementation which keeps the most recent events in a
+ * fixed-size ring buffer, for dumping from tests or bug reports. Recording an
+ * event does not allocate.
+ */
+public class TintEventLog implements TintMetrics {
+
+    private static final int TYPE_PHASE = 0;
+    private static final int TYPE_UPDATE = 1;
+
+    private static final String[] PHASE_NAMES = {"theme-check", "config", "view-setup"};
+
+    private final long[] mTimes;
+    private final int[] mTypes;
+    private final int[] mManagers;
+    private final long[] mValues;
+    private final int[] mExtras;
+    private int mNext;
+    private int mSize;
+
+    /**
+     * Create a log holding up to the specified number of events.
+     *
+     * @param capacity The number of events kept, older events are overwritten.
+     */
+    public TintEventLog(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        mTimes = new long[capacity];
+        mTypes = new int[capacity];
+        mManagers = new int[capacity];
+        mValues = new long[capacity];
+        mExtras = new int[capacity];
+    }
+
+    @Override
+    public synchronized void onPhase(SystemBarTintManager manager, int phase, long durationNanos) {
+        record(TYPE_PHASE, manager, durationNanos, phase);
+    }
+
+    @Override
+    public synchronized void onTintUpdate(SystemBarTintManager manager, int updateCount, int invalidationCount) {
+        record(TYPE_UPDATE, manager, updateCount, invalidationCount);
+    }
+
+    private void record(int type, SystemBarTintManager manager, long value, int extra) {
+        int i = mNext;
+        mTimes[i] = System.nanoTime();
+        mTypes[i] = type;
+        mManagers[i] = System.identityHashCode(manager);
+        mValues[i] = value;
+        mExtras[i] = extra;
+        mNext = (i + 1) % mTimes.length;
+        if (mSize < mTimes.length) {
+            mSize++;
+        }
+    }
+
+    /**
+     * Get the number of events currently held.
+     */
+    public synchronized int size() {
+        return mSize;
+    }
+
+    /**
+     * Discard all recorded events.
+     */
+    public synchronized void clear() {
+        mNext = 0;
+        mSize = 0;
+    }
+
+    /**
+     * Write the recorded events, oldest first, one per line.
+     *
+     * @param writer The destination.
+     */
+    public synchronized void dump(PrintWriter writer) {
+        int start = (mNext - mSize + mTimes.length) % mTimes.length;
+        for (int n = 0; n < mSize; n++) {
+            int i = (start + n) % mTimes.length;
+            writer.print(mTimes[i]);
+            writer.print(" manager@");
+            writer.print(Integer.toHexString(mManagers[i]));
+            if (mTypes[i] == TYPE_PHASE) {
+                writer.print(" phase ");
+                int phase = mExtras[i];
+                writer.print(phase >= 0 && phase < PHASE_NAMES.length ? PHASE_NAMES[phase] : String.valueOf(phase));
+                writer.print(' ');
+                writer.print(mValues[i] / 1000);
+                writer.println("us");
+            } else {
+                writer.print(" updates=");
+                writer.print(mValues[i]);
+                writer.print(" invalidations=");
+                writer.println(mExtras[i]);
+            }
+        }
+        writer.flush();
+    }
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2013 readyState Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.readystatesoftware.systembartint;
+
+/**
+ * Receives timings and update counts from every {@link SystemBarTintManager} in
+ * the process. Register an implementation with
+ * {@link SystemBarTintManager#setMetrics(TintMetrics)}. While no implementation is
+ * registered the managers do not measure anything.
+ *
+ * Callbacks are made on the main thread, from inside the measured manager calls,
+ * so implementations should return quickly.
+ */
+public interface TintMetrics {
+
+    /**
+     * Constructor phase which reads the translucency theme attributes and window flags.
+     */
+    int PHASE_THEME_CHECK = 0;
+
+    /**
+     * Constructor phase which computes the {@link SystemBarTintManager.SystemBarConfig}
+     * values needed to detect the navigation bar.
+     */
+    int PHASE_CONFIG = 1;
+
+    /**
+     * Creation and attachment of a tint to the window, the first time it is enabled.
+     */
+    int PHASE_VIEW_SETUP = 2;
+
+    /**
+     * Called when a measured phase completes.
+     *
+     * @param manager The manager that ran the phase.
+     * @param phase One of the {@code PHASE_*} constants.
+     * @param durationNanos The time spent in the phase, in nanoseconds.
+     */
+    void onPhase(SystemBarTintManager manager, int phase, long durationNanos);
+
+    /**
+     * Called for every tint color, resource, drawable or alpha update.
+     *
+     * @param manager The manager that was updated.
+     * @param updateCount The number of updates made to this manager so far.
+     * @param invalidationCount The number of those updates that changed what is drawn,
+     *                          and so caused an invalidation.
+     */
+    void onTintUpdate(SystemBarTintManager manager, int updateCount, int invalidationCount);
+
+}
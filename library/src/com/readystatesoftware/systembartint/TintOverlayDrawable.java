@@ -0,0 +1,240 @@
+/*
+ * Copyright (C) 2013 readyState Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.readystatesoftware.systembartint;
+
+import android.annotation.TargetApi;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.Drawable;
+import android.view.Gravity;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout.LayoutParams;
+
+/**
+ * Drawable which paints the status and navigation bar tints from the overlay of
+ * the window decor, so that no views are added to the decor hierarchy. Each bar
+ * is a layer positioned within the decor bounds using frame layout parameters.
+ */
+@TargetApi(18)
+class TintOverlayDrawable extends Drawable implements Drawable.Callback, View.OnLayoutChangeListener {
+
+    static final int LAYER_STATUS_BAR = 0;
+    static final int LAYER_NAV_BAR = 1;
+
+    private final ViewGroup mDecorViewGroup;
+    private final Layer[] mLayers = {new Layer(), new Layer()};
+    private boolean mInstalled;
+    private boolean mDrawing;
+
+    TintOverlayDrawable(ViewGroup decorViewGroup) {
+        mDecorViewGroup = decorViewGroup;
+    }
+
+    boolean isLayerAttached(int layer) {
+        return mLayers[layer].mParams != null;
+    }
+
+    void attachLayer(int layer, LayoutParams params) {
+        Layer l = mLayers[layer];
+        l.mParams = params;
+        if (!mInstalled) {
+            mInstalled = true;
+            setBounds(0, 0, mDecorViewGroup.getWidth(), mDecorViewGroup.getHeight());
+            mDecorViewGroup.addOnLayoutChangeListener(this);
+            mDecorViewGroup.getOverlay().add(this);
+        }
+        layoutLayer(l, getBounds());
+    }
+
+    LayoutParams getLayerParams(int layer) {
+        return mLayers[layer].mParams;
+    }
+
+    void relayoutLayer(int layer) {
+        layoutLayer(mLayers[layer], getBounds());
+        invalidateSelf();
+    }
+
+    void setLayerVisible(int layer, boolean visible) {
+        Layer l = mLayers[layer];
+        if (l.mVisible != visible) {
+            l.mVisible = visible;
+            invalidateSelf();
+        }
+    }
+
+    void setLayerColor(int layer, int color) {
+        Layer l = mLayers[layer];
+        if (l.mColorDrawable == null) {
+            l.mColorDrawable = new ColorDrawable(color);
+        } else {
+            // invalidates through our callback if the drawable is current
+            l.mColorDrawable.setColor(color);
+        }
+        setLayerDrawable(layer, l.mColorDrawable);
+    }
+
+    void setLayerResource(int layer, int res) {
+        setLayerDrawable(layer, res != 0 ? TintDrawableCache.getDrawable(mDecorViewGroup.getContext(), res) : null);
+    }
+
+    void setLayerDrawable(int layer, Drawable drawable) {
+        Layer l = mLayers[layer];
+        if (l.mDrawable == drawable) {
+            return;
+        }
+        Drawable previous = l.mDrawable;
+        l.mDrawable = drawable;
+        // the same drawable may be set on both layers, so keep our callback on the
+        // previous drawable while the other layer still uses it
+        if (previous != null && !isLayerDrawable(previous)) {
+            previous.setCallback(null);
+        }
+        if (drawable != null) {
+            drawable.setCallback(this);
+            drawable.setBounds(l.mBounds);
+        }
+        invalidateSelf();
+    }
+
+    private boolean isLayerDrawable(Drawable drawable) {
+        for (int i = 0; i < mLayers.length; i++) {
+            if (mLayers[i].mDrawable == drawable) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void setLayerAlpha(int layer, float alpha) {
+        Layer l = mLayers[layer];
+        int value = Math.round(Math.max(0f, Math.min(1f, alpha)) * 255);
+        if (l.mAlpha != value) {
+            l.mAlpha = value;
+            invalidateSelf();
+        }
+    }
+
+    private void layoutLayer(Layer layer, Rect bounds) {
+        LayoutParams p = layer.mParams;
+        int width = bounds.width();
+        int height = bounds.height();
+        int w = (p.width == LayoutParams.MATCH_PARENT) ? width - p.leftMargin - p.rightMargin : p.width;
+        int h = (p.height == LayoutParams.MATCH_PARENT) ? height - p.topMargin - p.bottomMargin : p.height;
+        int left = p.leftMargin;
+        if ((p.gravity & Gravity.HORIZONTAL_GRAVITY_MASK) == Gravity.RIGHT) {
+            left = width - p.rightMargin - w;
+        }
+        int top = p.topMargin;
+        if ((p.gravity & Gravity.VERTICAL_GRAVITY_MASK) == Gravity.BOTTOM) {
+            top = height - p.bottomMargin - h;
+        }
+        layer.mBounds.set(left, top, left + w, top + h);
+        if (layer.mDrawable != null) {
+            layer.mDrawable.setBounds(layer.mBounds);
+        }
+    }
+
+    @Override
+    protected void onBoundsChange(Rect bounds) {
+        for (int i = 0; i < mLayers.length; i++) {
+            if (mLayers[i].mParams != null) {
+                layoutLayer(mLayers[i], bounds);
+            }
+        }
+    }
+
+    @Override
+    public void onLayoutChange(View v, int left, int top, int right, int bottom,
+            int oldLeft, int oldTop, int oldRight, int oldBottom) {
+        setBounds(0, 0, right - left, bottom - top);
+    }
+
+    @Override
+    public void draw(Canvas canvas) {
+        mDrawing = true;
+        for (int i = 0; i < mLayers.length; i++) {
+            Layer l = mLayers[i];
+            if (!l.mVisible || l.mDrawable == null || l.mAlpha == 0) {
+                continue;
+            }
+            // a drawable shared by both layers is moved to each layer as it is drawn,
+            // ignoring the invalidation this causes
+            if (!l.mDrawable.getBounds().equals(l.mBounds)) {
+                l.mDrawable.setBounds(l.mBounds);
+            }
+            if (l.mAlpha < 255) {
+                Rect r = l.mBounds;
+                int count = canvas.saveLayerAlpha(r.left, r.top, r.right, r.bottom, l.mAlpha,
+                        Canvas.HAS_ALPHA_LAYER_SAVE_FLAG);
+                l.mDrawable.draw(canvas);
+                canvas.restoreToCount(count);
+            } else {
+                l.mDrawable.draw(canvas);
+            }
+        }
+        mDrawing = false;
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        // alpha is applied per layer
+    }
+
+    @Override
+    public void setColorFilter(ColorFilter cf) {
+        // not supported
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+
+    @Override
+    public void invalidateDrawable(Drawable who) {
+        if (!mDrawing) {
+            invalidateSelf();
+        }
+    }
+
+    @Override
+    public void scheduleDrawable(Drawable who, Runnable what, long when) {
+        scheduleSelf(what, when);
+    }
+
+    @Override
+    public void unscheduleDrawable(Drawable who, Runnable what) {
+        unscheduleSelf(what);
+    }
+
+    private static class Layer {
+
+        private final Rect mBounds = new Rect();
+        private LayoutParams mParams;
+        private Drawable mDrawable;
+        private ColorDrawable mColorDrawable;
+        private boolean mVisible;
+        private int mAlpha = 255;
+
+    }
+
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2013 readyState Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.readystatesoftware.systembartint;
+
+import android.os.Debug;
+
+/**
+ * Counts the objects allocated by the calling thread between {@link #start()} and
+ * {@link #stop()}.
+ */
+final class AllocCounter {
+
+    private AllocCounter() {
+    }
+
+    @SuppressWarnings("deprecation")
+    static void start() {
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+    }
+
+    /**
+     * @return The number of objects allocated since {@link #start()}.
+     */
+    @SuppressWarnings("deprecation")
+    static int stop() {
+        Debug.stopAllocCounting();
+        return Debug.getThreadAllocCount();
+    }
+
+}
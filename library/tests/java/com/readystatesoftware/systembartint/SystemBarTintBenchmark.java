@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2013 readyState Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.readystatesoftware.systembartint;
+
+import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.Drawable;
+import android.test.ActivityInstrumentationTestCase2;
+import android.test.UiThreadTest;
+import android.util.Log;
+
+/**
+ * On-device benchmarks of the configuration, construction and tint update paths.
+ * Each benchmark reports its time and allocations per operation to the log under
+ * the {@value #TAG} tag, and never fails on its results. Run them with the other
+ * instrumentation tests and compare the logged numbers between builds.
+ */
+public class SystemBarTintBenchmark extends ActivityInstrumentationTestCase2<TintTestActivity> {
+
+    private static final String TAG = "SystemBarTintBenchmark";
+
+    private static final int WARMUP_ITERATIONS = 200;
+    private static final int ITERATIONS = 2000;
+
+    private TintTestActivity mActivity;
+    private int mSink;
+
+    public SystemBarTintBenchmark() {
+        super(TintTestActivity.class);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mActivity = getActivity();
+    }
+
+    @UiThreadTest
+    public void testConfigConstruction() {
+        measure("SystemBarConfig cold", new Operation() {
+            @Override
+            public void run(int i) {
+                SystemBarTintManager.invalidateConfigCache();
+                resolve(SystemBarTintManager.SystemBarConfig.obtain(mActivity, true, true));
+            }
+        });
+        measure("SystemBarConfig cached", new Operation() {
+            @Override
+            public void run(int i) {
+                resolve(SystemBarTintManager.SystemBarConfig.obtain(mActivity, true, true));
+            }
+        });
+    }
+
+    @UiThreadTest
+    public void testPixelInsets() {
+        final SystemBarTintManager.SystemBarConfig config = new SystemBarTintManager(mActivity).getConfig();
+        measure("getPixelInset*", new Operation() {
+            @Override
+            public void run(int i) {
+                mSink += config.getPixelInsetTop(true) + config.getPixelInsetBottom()
+                        + config.getPixelInsetRight();
+            }
+        });
+    }
+
+    @UiThreadTest
+    public void testManagerConstruction() {
+        measure("SystemBarTintManager()", new Operation() {
+            @Override
+            public void run(int i) {
+                mSink += new SystemBarTintManager(mActivity).isStatusBarTintEnabled() ? 1 : 0;
+            }
+        });
+    }
+
+    @UiThreadTest
+    public void testSetTint() {
+        final SystemBarTintManager manager = createEnabledManager();
+        measure("setTintColor", new Operation() {
+            @Override
+            public void run(int i) {
+                manager.setTintColor((i & 1) == 0 ? 0xff336699 : 0xff669933);
+            }
+        });
+        measure("setTintColor unchanged", new Operation() {
+            @Override
+            public void run(int i) {
+                manager.setTintColor(0xff336699);
+            }
+        });
+        measure("setTintResource", new Operation() {
+            @Override
+            public void run(int i) {
+                manager.setTintResource((i & 1) == 0 ? android.R.color.black : android.R.color.white);
+            }
+        });
+        final Drawable first = new ColorDrawable(0xff336699);
+        final Drawable second = new ColorDrawable(0xff669933);
+        measure("setTintDrawable", new Operation() {
+            @Override
+            public void run(int i) {
+                manager.setTintDrawable((i & 1) == 0 ? first : second);
+            }
+        });
+        measure("setTintAlpha", new Operation() {
+            @Override
+            public void run(int i) {
+                manager.setTintAlpha((i & 1) == 0 ? 0.5f : 1f);
+            }
+        });
+    }
+
+    private SystemBarTintManager createEnabledManager() {
+        SystemBarTintManager manager = new SystemBarTintManager(mActivity);
+        manager.setStatusBarTintEnabled(true);
+        manager.setNavigationBarTintEnabled(true);
+        return manager;
+    }
+
+    private void resolve(SystemBarTintManager.SystemBarConfig config) {
+        mSink += config.getStatusBarHeight() + config.getActionBarHeight() + config.getNavigationBarHeight()
+                + config.getNavigationBarWidth() + (config.isNavigationAtBottom() ? 1 : 0);
+    }
+
+    /**
+     * Time an operation, then count its allocations in a separate run since counting
+     * slows allocation down.
+     */
+    private void measure(String name, Operation operation) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            operation.run(i);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            operation.run(i);
+        }
+        long nanos = System.nanoTime() - start;
+
+        AllocCounter.start();
+        for (int i = 0; i < ITERATIONS; i++) {
+            operation.run(i);
+        }
+        int allocations = AllocCounter.stop();
+
+        Log.i(TAG, name + ": " + (nanos / ITERATIONS) + " ns/op, "
+                + ((float) allocations / ITERATIONS) + " allocations/op");
+    }
+
+    private interface Operation {
+
+        void run(int i);
+
+    }
+
+}
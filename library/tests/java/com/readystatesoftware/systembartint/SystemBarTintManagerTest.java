@@ -0,0 +1,241 @@
+/*
+ * Copyright (C) 2013 readyState Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.readystatesoftware.systembartint;
+
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.test.ActivityInstrumentationTestCase2;
+import android.test.UiThreadTest;
+import android.view.View;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Allocation, invalidation and lookup budgets of {@link SystemBarTintManager}. Each
+ * test exercises the manager after a warm-up call, so that only the steady state is
+ * measured. On platforms without translucent system bars the tints are unavailable
+ * and the budgets hold trivially.
+ */
+public class SystemBarTintManagerTest extends ActivityInstrumentationTestCase2<TintTestActivity> {
+
+    private static final int MAX_CONSTRUCTION_ALLOCATIONS = 16;
+    private static final int UPDATE_COUNT = 100;
+
+    private static final String[] RES_NAMES = {"status_bar_height", "navigation_bar_height",
+            "navigation_bar_height_landscape", "navigation_bar_width", "config_showNavigationBar"};
+
+    private TintTestActivity mActivity;
+
+    public SystemBarTintManagerTest() {
+        super(TintTestActivity.class);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mActivity = getActivity();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        SystemBarTintManager.setMetrics(null);
+        super.tearDown();
+    }
+
+    @UiThreadTest
+    public void testRepeatedColorDoesNotAllocate() {
+        SystemBarTintManager manager = createEnabledManager();
+        manager.setTintColor(0xff336699);
+
+        AllocCounter.start();
+        for (int i = 0; i < UPDATE_COUNT; i++) {
+            manager.setTintColor(0xff336699);
+        }
+        assertEquals(0, AllocCounter.stop());
+    }
+
+    @UiThreadTest
+    public void testColorChangeDoesNotAllocate() {
+        SystemBarTintManager manager = createEnabledManager();
+        // the first change also schedules the traversal that later changes share
+        manager.setTintColor(0xff000000);
+
+        AllocCounter.start();
+        for (int i = 1; i <= UPDATE_COUNT; i++) {
+            manager.setTintColor(0xff000000 | (i * 0x020202));
+        }
+        assertEquals(0, AllocCounter.stop());
+    }
+
+    @UiThreadTest
+    public void testConstructionAllocations() {
+        createEnabledManager();
+
+        AllocCounter.start();
+        new SystemBarTintManager(mActivity);
+        int count = AllocCounter.stop();
+        assertTrue("construction allocated " + count + " objects", count <= MAX_CONSTRUCTION_ALLOCATIONS);
+    }
+
+    @UiThreadTest
+    public void testBatchedUpdateInvalidatesOncePerBar() {
+        SystemBarTintManager manager = createEnabledManager();
+        manager.setTintColor(0xff000000);
+        int bars = countAttached(manager.getStatusBarTint()) + countAttached(manager.getNavigationBarTint());
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            // the test activity requests translucent bars, so the status bar is tinted
+            assertTrue(manager.getStatusBarTint().isAttached());
+        }
+        InvalidationCounter invalidations = new InvalidationCounter();
+        invalidations.watch(manager.getStatusBarTint());
+        invalidations.watch(manager.getNavigationBarTint());
+        UpdateCounter counter = new UpdateCounter();
+        SystemBarTintManager.setMetrics(counter);
+
+        manager.edit().setTintColor(0xff336699).setTintColor(0xff669933).apply();
+        assertEquals(bars, invalidations.mCount);
+        assertEquals(bars, counter.mInvalidations);
+
+        // a batch with the same values changes nothing
+        manager.edit().setTintColor(0xff669933).apply();
+        assertEquals(bars, invalidations.mCount);
+        assertEquals(bars, counter.mInvalidations);
+    }
+
+    @UiThreadTest
+    public void testRepeatedColorDoesNotInvalidate() {
+        SystemBarTintManager manager = createEnabledManager();
+        manager.setStatusBarTintColor(0xff336699);
+        UpdateCounter counter = new UpdateCounter();
+        SystemBarTintManager.setMetrics(counter);
+
+        for (int i = 0; i < UPDATE_COUNT; i++) {
+            manager.setStatusBarTintColor(0xff336699);
+        }
+        assertEquals(0, counter.mInvalidations);
+    }
+
+    @UiThreadTest
+    public void testConfigSharedBetweenManagers() {
+        SystemBarTintManager.SystemBarConfig config = createEnabledManager().getConfig();
+        assertSame(config, createEnabledManager().getConfig());
+
+        // resolving values does not replace the shared instance
+        resolveConfig(createEnabledManager());
+        assertSame(config, createEnabledManager().getConfig());
+    }
+
+    @UiThreadTest
+    public void testResourceIdentifiersLookedUpOnce() {
+        resolveConfig(createEnabledManager());
+        int[] counts = new int[RES_NAMES.length];
+        for (int i = 0; i < RES_NAMES.length; i++) {
+            counts[i] = SystemBarTintManager.SystemBarConfig.getResourceIdLookupCount(RES_NAMES[i]);
+            assertTrue(RES_NAMES[i], counts[i] <= 1);
+        }
+
+        // computing the configuration again performs no further lookups
+        SystemBarTintManager.invalidateConfigCache();
+        resolveConfig(createEnabledManager());
+        for (int i = 0; i < RES_NAMES.length; i++) {
+            assertEquals(RES_NAMES[i], counts[i],
+                    SystemBarTintManager.SystemBarConfig.getResourceIdLookupCount(RES_NAMES[i]));
+        }
+    }
+
+    private SystemBarTintManager createEnabledManager() {
+        SystemBarTintManager manager = new SystemBarTintManager(mActivity);
+        manager.setStatusBarTintEnabled(true);
+        manager.setNavigationBarTintEnabled(true);
+        return manager;
+    }
+
+    private static int countAttached(BarTint tint) {
+        return tint.isAttached() ? 1 : 0;
+    }
+
+    private static void resolveConfig(SystemBarTintManager manager) {
+        SystemBarTintManager.SystemBarConfig config = manager.getConfig();
+        config.getStatusBarHeight();
+        config.getActionBarHeight();
+        config.hasNavigtionBar();
+        config.getNavigationBarHeight();
+        config.getNavigationBarWidth();
+    }
+
+    /**
+     * Counts the invalidations that the backgrounds of tint views request from
+     * their views, forwarding them so that the views still redraw.
+     */
+    private static class InvalidationCounter {
+
+        // drawables only keep a weak reference to their callback
+        private final List<Drawable.Callback> mCallbacks = new ArrayList<Drawable.Callback>();
+        private int mCount;
+
+        private void watch(BarTint tint) {
+            if (!tint.isAttached()) {
+                return;
+            }
+            final View view = ((BarTint.ViewTint) tint).getView();
+            Drawable.Callback callback = new Drawable.Callback() {
+                @Override
+                public void invalidateDrawable(Drawable who) {
+                    mCount++;
+                    view.invalidateDrawable(who);
+                }
+
+                @Override
+                public void scheduleDrawable(Drawable who, Runnable what, long when) {
+                    view.scheduleDrawable(who, what, when);
+                }
+
+                @Override
+                public void unscheduleDrawable(Drawable who, Runnable what) {
+                    view.unscheduleDrawable(who, what);
+                }
+            };
+            view.getBackground().setCallback(callback);
+            mCallbacks.add(callback);
+        }
+
+    }
+
+    private static class UpdateCounter implements TintMetrics {
+
+        private int mUpdates;
+        private int mInvalidations;
+        private int mLastUpdateCount;
+        private int mLastInvalidationCount;
+
+        @Override
+        public void onPhase(SystemBarTintManager manager, int phase, long durationNanos) {
+        }
+
+        @Override
+        public void onTintUpdate(SystemBarTintManager manager, int updateCount, int invalidationCount) {
+            // the counts are cumulative per manager, record the increments
+            mUpdates += updateCount - mLastUpdateCount;
+            mInvalidations += invalidationCount - mLastInvalidationCount;
+            mLastUpdateCount = updateCount;
+            mLastInvalidationCount = invalidationCount;
+        }
+
+    }
+
+}
@@ -16,23 +16,21 @@
 
 package com.chiralcode.colorpicker;
 
-import android.annotation.SuppressLint;
 import android.content.Context;
+import android.annotation.TargetApi;
 import android.graphics.Bitmap;
-import android.graphics.Bitmap.Config;
+import android.graphics.BitmapShader;
 import android.graphics.Canvas;
 import android.graphics.Color;
-import android.graphics.ComposeShader;
 import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.Paint.Join;
 import android.graphics.Paint.Style;
 import android.graphics.Path;
-import android.graphics.PorterDuff;
-import android.graphics.RadialGradient;
 import android.graphics.RectF;
 import android.graphics.Shader.TileMode;
 import android.graphics.SweepGradient;
+import android.os.Build;
 import android.os.Bundle;
 import android.os.Parcelable;
 import android.util.AttributeSet;
@@ -41,6 +39,44 @@ import android.view.View;
 
 public class ColorPicker extends View {
 
+    /**
+     * Receives the colors selected by the user.
+     */
+    public interface OnColorChangedListener {
+
+        /**
+         * Called when the user changes the color, at most once per frame.
+         *
+         * @param picker The picker.
+         * @param color The selected color.
+         */
+        void onColorChanged(ColorPicker picker, int color);
+
+    }
+
+    /**
+     * Choose the wheel rendering mode from whether the view is hardware accelerated:
+     * {@link #WHEEL_MODE_SHADER} if it is, {@link #WHEEL_MODE_BITMAP_565} otherwise.
+     */
+    public static final int WHEEL_MODE_AUTO = 0;
+
+    /**
+     * Draw the wheel with its shaders on every frame, without keeping a bitmap.
+     * Intended for hardware accelerated views.
+     */
+    public static final int WHEEL_MODE_SHADER = 1;
+
+    /**
+     * Draw the wheel from a cached ARGB_8888 bitmap.
+     */
+    public static final int WHEEL_MODE_BITMAP = 2;
+
+    /**
+     * Draw the wheel from a cached RGB_565 bitmap, clipped to the wheel circle.
+     * Uses half the memory of {@link #WHEEL_MODE_BITMAP}.
+     */
+    public static final int WHEEL_MODE_BITMAP_565 = 3;
+
     /**
      * Customizable display parameters (in percents)
      */
@@ -49,8 +85,24 @@ public class ColorPicker extends View {
     private final int paramValueSliderWidth = 10; // width of the value slider
     private final int paramArrowPointerSize = 4; // size of the arrow pointer; set to 0 to hide the pointer
 
+    /**
+     * Hit testing table parameters. Each cell packs the touch target in its top two
+     * bits, then the hue (in 1/32 degrees) and saturation for the wheel, or the value
+     * for the slider, both scaled to 14 bits. Cells crossed by the edge of the wheel or
+     * the slider are marked to be computed exactly.
+     */
+    private static final int HIT_TABLE_RESOLUTION = 128; // cells along the smaller side
+    private static final int HIT_NONE = 0;
+    private static final int HIT_WHEEL = 1;
+    private static final int HIT_VALUE = 2;
+    private static final int HIT_EXACT = 3;
+    private static final int HIT_FRACTION_MAX = (1 << 14) - 1;
+    private static final int HIT_HUE_STEPS = 32;
+
     private Paint colorWheelPaint;
+    private Paint colorWheelPlaceholderPaint;
     private Paint valueSliderPaint;
+    private Paint valueSliderOverlayPaint;
 
     private Paint colorViewPaint;
 
@@ -68,6 +120,23 @@ public class ColorPicker extends View {
     private Path arrowPointerPath;
 
     private Bitmap colorWheelBitmap;
+    private Bitmap colorWheelPlaceholder;
+    private RectF colorWheelRect;
+    private boolean asyncWheelRendering;
+    private int wheelMode = WHEEL_MODE_AUTO;
+    private int resolvedWheelMode = WHEEL_MODE_BITMAP;
+
+    private final ColorWheelCache.Callback colorWheelCallback = new ColorWheelCache.Callback() {
+        @Override
+        public void onColorWheelReady(int radius, boolean opaque, Bitmap bitmap) {
+            boolean accepted = opaque ? resolvedWheelMode == WHEEL_MODE_BITMAP_565
+                    : resolvedWheelMode == WHEEL_MODE_BITMAP;
+            if (radius == colorWheelRadius && accepted) {
+                setColorWheelBitmap(bitmap);
+                invalidate();
+            }
+        }
+    };
 
     private int valueSliderWidth;
     private int innerPadding;
@@ -80,9 +149,30 @@ public class ColorPicker extends View {
 
     private Matrix gradientRotationMatrix;
 
+    private int[] hitTable;
+    private int hitCellSize;
+    private int hitColumns;
+    private int hitRows;
+
+    private OnColorChangedListener onColorChangedListener;
+    private boolean colorChangePending;
+
+    private final Runnable colorChangedRunnable = new Runnable() {
+        @Override
+        public void run() {
+            colorChangePending = false;
+            if (onColorChangedListener != null) {
+                onColorChangedListener.onColorChanged(ColorPicker.this, getColor());
+            }
+        }
+    };
+
     /** Currently selected color */
     private float[] colorHSV = new float[] { 0f, 0f, 1f };
 
+    /** Scratch color reused by onDraw */
+    private final float[] drawHSV = new float[3];
+
     public ColorPicker(Context context, AttributeSet attrs, int defStyle) {
         super(context, attrs, defStyle);
         init();
@@ -115,9 +205,17 @@ public class ColorPicker extends View {
         colorWheelPaint.setAntiAlias(true);
         colorWheelPaint.setDither(true);
 
+        colorWheelPlaceholderPaint = new Paint();
+        colorWheelPlaceholderPaint.setAntiAlias(true);
+        colorWheelPlaceholderPaint.setFilterBitmap(true);
+        colorWheelPlaceholderPaint.setColor(Color.LTGRAY);
+
         valueSliderPaint = new Paint();
         valueSliderPaint.setAntiAlias(true);
-        valueSliderPaint.setDither(true);
+
+        valueSliderOverlayPaint = new Paint();
+        valueSliderOverlayPaint.setAntiAlias(true);
+        valueSliderOverlayPaint.setDither(true);
 
         colorViewPaint = new Paint();
         colorViewPaint.setAntiAlias(true);
@@ -128,6 +226,7 @@ public class ColorPicker extends View {
 
         outerWheelRect = new RectF();
         innerWheelRect = new RectF();
+        colorWheelRect = new RectF();
 
         colorPointerCoords = new RectF();
 
@@ -141,7 +240,6 @@ public class ColorPicker extends View {
         setMeasuredDimension(size, size);
     }
 
-    @SuppressLint("DrawAllocation")
     @Override
     protected void onDraw(Canvas canvas) {
 
@@ -150,22 +248,31 @@ public class ColorPicker extends View {
 
         // drawing color wheel
 
-        canvas.drawBitmap(colorWheelBitmap, centerX - colorWheelRadius, centerY - colorWheelRadius, null);
+        if (resolvedWheelMode == WHEEL_MODE_SHADER || (colorWheelBitmap != null && resolvedWheelMode == WHEEL_MODE_BITMAP_565)) {
+            // the paint holds either the wheel shader or a shader of the opaque bitmap
+            canvas.drawCircle(centerX, centerY, colorWheelRadius, colorWheelPaint);
+        } else if (colorWheelBitmap != null) {
+            canvas.drawBitmap(colorWheelBitmap, centerX - colorWheelRadius, centerY - colorWheelRadius, null);
+        } else if (colorWheelPlaceholder != null) {
+            canvas.drawBitmap(colorWheelPlaceholder, null, colorWheelRect, colorWheelPlaceholderPaint);
+        } else {
+            canvas.drawCircle(centerX, centerY, colorWheelRadius, colorWheelPlaceholderPaint);
+        }
 
         // drawing color view
 
         colorViewPaint.setColor(Color.HSVToColor(colorHSV));
         canvas.drawPath(colorViewPath, colorViewPaint);
 
-        // drawing value slider
-
-        float[] hsv = new float[] { colorHSV[0], colorHSV[1], 1f };
-
-        SweepGradient sweepGradient = new SweepGradient(centerX, centerY, new int[] { Color.BLACK, Color.HSVToColor(hsv), Color.WHITE }, null);
-        sweepGradient.setLocalMatrix(gradientRotationMatrix);
-        valueSliderPaint.setShader(sweepGradient);
+        // drawing value slider: the full value color, darkened and lightened towards
+        // the ends by a fixed overlay, so no shader is created per frame
 
+        drawHSV[0] = colorHSV[0];
+        drawHSV[1] = colorHSV[1];
+        drawHSV[2] = 1f;
+        valueSliderPaint.setColor(Color.HSVToColor(drawHSV));
         canvas.drawPath(valueSliderPath, valueSliderPaint);
+        canvas.drawPath(valueSliderPath, valueSliderOverlayPaint);
 
         // drawing color wheel pointer
 
@@ -182,7 +289,10 @@ public class ColorPicker extends View {
 
         // drawing value pointer
 
-        valuePointerPaint.setColor(Color.HSVToColor(new float[] { 0f, 0f, 1f - colorHSV[2] }));
+        drawHSV[0] = 0f;
+        drawHSV[1] = 0f;
+        drawHSV[2] = 1f - colorHSV[2];
+        valuePointerPaint.setColor(Color.HSVToColor(drawHSV));
 
         double valueAngle = (colorHSV[2] - 0.5f) * Math.PI;
         float valueAngleX = (float) Math.cos(valueAngle);
@@ -250,44 +360,78 @@ public class ColorPicker extends View {
         outerWheelRect.set(centerX - outerWheelRadius, centerY - outerWheelRadius, centerX + outerWheelRadius, centerY + outerWheelRadius);
         innerWheelRect.set(centerX - innerWheelRadius, centerY - innerWheelRadius, centerX + innerWheelRadius, centerY + innerWheelRadius);
 
-        colorWheelBitmap = createColorWheelBitmap(colorWheelRadius * 2, colorWheelRadius * 2);
+        colorWheelRect.set(centerX - colorWheelRadius, centerY - colorWheelRadius, centerX + colorWheelRadius, centerY + colorWheelRadius);
+
+        setupColorWheel();
+
+        buildHitTable(width, height);
 
         gradientRotationMatrix = new Matrix();
         gradientRotationMatrix.preRotate(270, width / 2, height / 2);
 
+        // black fading out to the middle of the slider, then white fading in
+        SweepGradient overlayGradient = new SweepGradient(centerX, centerY, new int[] { Color.BLACK, 0x00000000, 0x00FFFFFF, Color.WHITE },
+                new float[] { 0f, 0.5f, 0.5f, 1f });
+        overlayGradient.setLocalMatrix(gradientRotationMatrix);
+        valueSliderOverlayPaint.setShader(overlayGradient);
+
+        colorViewPath.reset();
         colorViewPath.arcTo(outerWheelRect, 270, -180);
         colorViewPath.arcTo(innerWheelRect, 90, 180);
 
+        valueSliderPath.reset();
         valueSliderPath.arcTo(outerWheelRect, 270, 180);
         valueSliderPath.arcTo(innerWheelRect, 90, -180);
 
     }
 
-    private Bitmap createColorWheelBitmap(int width, int height) {
-
-        Bitmap bitmap = Bitmap.createBitmap(width, height, Config.ARGB_8888);
+    @TargetApi(11)
+    private void setupColorWheel() {
 
-        int colorCount = 12;
-        int colorAngleStep = 360 / 12;
-        int colors[] = new int[colorCount + 1];
-        float hsv[] = new float[] { 0f, 1f, 1f };
-        for (int i = 0; i < colors.length; i++) {
-            hsv[0] = (i * colorAngleStep + 180) % 360;
-            colors[i] = Color.HSVToColor(hsv);
+        resolvedWheelMode = wheelMode;
+        if (wheelMode == WHEEL_MODE_AUTO) {
+            boolean accelerated = Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB && isHardwareAccelerated();
+            resolvedWheelMode = accelerated ? WHEEL_MODE_SHADER : WHEEL_MODE_BITMAP_565;
         }
-        colors[colorCount] = colors[0];
 
-        SweepGradient sweepGradient = new SweepGradient(width / 2, height / 2, colors, null);
-        RadialGradient radialGradient = new RadialGradient(width / 2, height / 2, colorWheelRadius, 0xFFFFFFFF, 0x00FFFFFF, TileMode.CLAMP);
-        ComposeShader composeShader = new ComposeShader(sweepGradient, radialGradient, PorterDuff.Mode.SRC_OVER);
+        colorWheelBitmap = null;
+        colorWheelPlaceholder = null;
+        colorWheelPaint.setShader(null);
+        if (colorWheelRadius <= 0) {
+            return;
+        }
 
-        colorWheelPaint.setShader(composeShader);
+        if (resolvedWheelMode == WHEEL_MODE_SHADER) {
+            colorWheelPaint.setShader(ColorWheelCache.createShader(getWidth() / 2, getHeight() / 2, colorWheelRadius));
+            return;
+        }
 
-        Canvas canvas = new Canvas(bitmap);
-        canvas.drawCircle(width / 2, height / 2, colorWheelRadius, colorWheelPaint);
+        // wheels are shared through the cache, rendering only the sizes not seen before
+        boolean opaque = (resolvedWheelMode == WHEEL_MODE_BITMAP_565);
+        Bitmap bitmap = ColorWheelCache.get(colorWheelRadius, opaque);
+        if (bitmap == null) {
+            if (asyncWheelRendering) {
+                colorWheelPlaceholder = opaque ? null : ColorWheelCache.getAny();
+                ColorWheelCache.renderAsync(getContext(), colorWheelRadius, opaque, colorWheelCallback);
+                return;
+            }
+            bitmap = ColorWheelCache.getOrRender(getContext(), colorWheelRadius, opaque);
+        }
+        setColorWheelBitmap(bitmap);
 
-        return bitmap;
+    }
 
+    private void setColorWheelBitmap(Bitmap bitmap) {
+        colorWheelBitmap = bitmap;
+        colorWheelPlaceholder = null;
+        if (resolvedWheelMode == WHEEL_MODE_BITMAP_565) {
+            // the opaque bitmap is drawn as the shader of a circle, which clips off its corners
+            BitmapShader shader = new BitmapShader(bitmap, TileMode.CLAMP, TileMode.CLAMP);
+            Matrix matrix = new Matrix();
+            matrix.setTranslate(getWidth() / 2 - colorWheelRadius, getHeight() / 2 - colorWheelRadius);
+            shader.setLocalMatrix(matrix);
+            colorWheelPaint.setShader(shader);
+        }
     }
 
     @Override
@@ -296,30 +440,189 @@ public class ColorPicker extends View {
         switch (action) {
         case MotionEvent.ACTION_DOWN:
         case MotionEvent.ACTION_MOVE:
+        case MotionEvent.ACTION_UP:
 
+            // only the latest sample of a batched move is used, the historical samples
+            // it carries would be superseded within the same frame anyway
             int x = (int) event.getX();
             int y = (int) event.getY();
-            int cx = x - getWidth() / 2;
-            int cy = y - getHeight() / 2;
-            double d = Math.sqrt(cx * cx + cy * cy);
 
-            if (d <= colorWheelRadius) {
+            // moves use the precomputed table, the final position is computed exactly
+            int hit = (action == MotionEvent.ACTION_UP) ? computeHit(x, y) : lookupHit(x, y);
+            if (applyHit(hit)) {
+                invalidate();
+                dispatchColorChanged();
+            }
 
-                colorHSV[0] = (float) (Math.toDegrees(Math.atan2(cy, cx)) + 180f);
-                colorHSV[1] = Math.max(0f, Math.min(1f, (float) (d / colorWheelRadius)));
+            return true;
+        }
+        return super.onTouchEvent(event);
+    }
 
-                invalidate();
+    private void buildHitTable(int width, int height) {
+        hitCellSize = Math.max(1, Math.min(width, height) / HIT_TABLE_RESOLUTION);
+        hitColumns = (width + hitCellSize - 1) / hitCellSize;
+        hitRows = (height + hitCellSize - 1) / hitCellSize;
+        int size = hitColumns * hitRows;
+        if (hitTable == null || hitTable.length < size) {
+            hitTable = new int[size];
+        }
+        int half = hitCellSize / 2;
+        int centerX = width / 2;
+        for (int row = 0; row < hitRows; row++) {
+            int top = row * hitCellSize;
+            int y = Math.min(top + half, height - 1);
+            int reachY = Math.max(y - top, Math.min(top + hitCellSize, height) - 1 - y);
+            for (int column = 0; column < hitColumns; column++) {
+                int left = column * hitCellSize;
+                int x = Math.min(left + half, width - 1);
+                int reachX = Math.max(x - left, Math.min(left + hitCellSize, width) - 1 - x);
+                // a cell whose sample point lies within reach of an edge may be crossed by it
+                float reach = (float) Math.sqrt(reachX * reachX + reachY * reachY) + 1f;
+                int cx = x - centerX;
+                int cy = y - height / 2;
+                float d = (float) Math.sqrt(cx * cx + cy * cy);
+                boolean crossed = Math.abs(d - colorWheelRadius) <= reach
+                        || Math.abs(d - innerWheelRadius) <= reach
+                        || (left < centerX && left + hitCellSize > centerX);
+                hitTable[row * hitColumns + column] = crossed ? (HIT_EXACT << 30) : computeHit(x, y);
+            }
+        }
+    }
+
+    /**
+     * Get the packed touch target at a point from the table, computing it exactly for
+     * points outside of the view or in cells crossed by an edge.
+     */
+    int lookupHit(int x, int y) {
+        if (hitTable == null || x < 0 || y < 0 || x >= getWidth() || y >= getHeight()) {
+            return computeHit(x, y);
+        }
+        int hit = hitTable[(y / hitCellSize) * hitColumns + x / hitCellSize];
+        if ((hit >>> 30) == HIT_EXACT) {
+            return computeHit(x, y);
+        }
+        return hit;
+    }
 
-            } else if (x >= getWidth() / 2 && d >= innerWheelRadius) {
+    int computeHit(int x, int y) {
 
-                colorHSV[2] = (float) Math.max(0, Math.min(1, Math.atan2(cy, cx) / Math.PI + 0.5f));
+        int cx = x - getWidth() / 2;
+        int cy = y - getHeight() / 2;
+        double d = Math.sqrt(cx * cx + cy * cy);
 
-                invalidate();
-            }
+        if (d <= colorWheelRadius) {
+
+            float hue = (float) (Math.toDegrees(Math.atan2(cy, cx)) + 180f);
+            float saturation = Math.max(0f, Math.min(1f, (float) (d / colorWheelRadius)));
+            int hueSteps = Math.round(hue * HIT_HUE_STEPS);
+            return (HIT_WHEEL << 30) | (hueSteps << 14) | Math.round(saturation * HIT_FRACTION_MAX);
+
+        } else if (x >= getWidth() / 2 && d >= innerWheelRadius) {
 
+            float value = (float) Math.max(0, Math.min(1, Math.atan2(cy, cx) / Math.PI + 0.5f));
+            return (HIT_VALUE << 30) | Math.round(value * HIT_FRACTION_MAX);
+        }
+
+        return HIT_NONE;
+    }
+
+    /**
+     * Apply a packed touch target to the selected color.
+     *
+     * @return True if the touch selected a color.
+     */
+    private boolean applyHit(int hit) {
+        switch (hit >>> 30) {
+        case HIT_WHEEL:
+            colorHSV[0] = (float) ((hit >>> 14) & HIT_FRACTION_MAX) / HIT_HUE_STEPS;
+            colorHSV[1] = (float) (hit & HIT_FRACTION_MAX) / HIT_FRACTION_MAX;
+            return true;
+        case HIT_VALUE:
+            colorHSV[2] = (float) (hit & HIT_FRACTION_MAX) / HIT_FRACTION_MAX;
             return true;
+        default:
+            return false;
         }
-        return super.onTouchEvent(event);
+    }
+
+    /**
+     * Notify the listener of the selected color on the next frame, however many
+     * touch events change it before then.
+     */
+    @TargetApi(16)
+    private void dispatchColorChanged() {
+        if (onColorChangedListener == null || colorChangePending) {
+            return;
+        }
+        colorChangePending = true;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            postOnAnimation(colorChangedRunnable);
+        } else {
+            post(colorChangedRunnable);
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        removeCallbacks(colorChangedRunnable);
+        colorChangePending = false;
+    }
+
+    /**
+     * Set a listener for the colors selected by the user. Changes are coalesced so
+     * that the listener is called at most once per frame, with the latest color.
+     *
+     * @param listener The listener, or null to remove it.
+     */
+    public void setOnColorChangedListener(OnColorChangedListener listener) {
+        onColorChangedListener = listener;
+    }
+
+    /**
+     * Render color wheels of new sizes on a background thread, drawing a placeholder
+     * until they are ready, rather than rendering them during layout.
+     *
+     * @param async True to render wheels in the background, false to render them
+     *              synchronously (default).
+     */
+    public void setAsyncWheelRendering(boolean async) {
+        asyncWheelRendering = async;
+    }
+
+    /**
+     * Set how the color wheel is rendered.
+     *
+     * @param mode One of the {@code WHEEL_MODE_*} constants, {@link #WHEEL_MODE_AUTO} by default.
+     */
+    public void setWheelMode(int mode) {
+        wheelMode = mode;
+        if (getWidth() > 0) {
+            setupColorWheel();
+            invalidate();
+        }
+    }
+
+    /**
+     * Get the rendering mode in use, after resolving {@link #WHEEL_MODE_AUTO}. Only
+     * known once the view has been laid out.
+     */
+    public int getResolvedWheelMode() {
+        return resolvedWheelMode;
+    }
+
+    /**
+     * Get the memory used by the color wheel in the current rendering mode. Wheel
+     * bitmaps are shared by all pickers of the same size.
+     *
+     * @return The size of the wheel bitmap in bytes, or 0 in shader mode.
+     */
+    public int getWheelMemoryFootprint() {
+        if (resolvedWheelMode == WHEEL_MODE_SHADER || colorWheelRadius <= 0) {
+            return 0;
+        }
+        return ColorWheelCache.getByteCount(colorWheelRadius, resolvedWheelMode == WHEEL_MODE_BITMAP_565);
     }
 
     public void setColor(int color) {
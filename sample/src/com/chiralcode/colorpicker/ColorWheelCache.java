@@ -0,0 +1,238 @@
+/*
+ * Copyright 2013 Piotr Adamus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.chiralcode.colorpicker;
+
+import android.annotation.TargetApi;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.Bitmap.Config;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.ComposeShader;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.RadialGradient;
+import android.graphics.Shader;
+import android.graphics.Shader.TileMode;
+import android.graphics.SweepGradient;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Process-wide cache of rendered color wheel bitmaps, keyed by wheel radius and
+ * bitmap config, and shared by all color pickers. Opaque wheels are rendered in
+ * RGB_565 at half the memory, and must be drawn clipped to the wheel circle.
+ * Least recently used wheels are evicted, and the cache is emptied when the
+ * system asks the application to trim its memory. Cached bitmaps are never
+ * modified once rendered.
+ */
+final class ColorWheelCache {
+
+    interface Callback {
+
+        void onColorWheelReady(int radius, boolean opaque, Bitmap bitmap);
+
+    }
+
+    private static final int MAX_ENTRIES = 3;
+
+    private static final Map<Integer, Bitmap> cache = new LinkedHashMap<Integer, Bitmap>(MAX_ENTRIES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Bitmap> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private static ExecutorService executor;
+    private static Handler mainHandler;
+    private static boolean callbacksRegistered;
+
+    private ColorWheelCache() {
+    }
+
+    /**
+     * Get a cached wheel.
+     *
+     * @return The wheel, or null if no wheel of that radius and config is cached.
+     */
+    static Bitmap get(int radius, boolean opaque) {
+        synchronized (cache) {
+            return cache.get(key(radius, opaque));
+        }
+    }
+
+    /**
+     * Get the most recently used transparent wheel of any radius, to be drawn scaled
+     * while the wheel of the right radius is rendered.
+     *
+     * @return The wheel, or null if there is none.
+     */
+    static Bitmap getAny() {
+        synchronized (cache) {
+            Bitmap result = null;
+            for (Map.Entry<Integer, Bitmap> entry : cache.entrySet()) {
+                if ((entry.getKey() & 1) == 0) {
+                    result = entry.getValue();
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Get a wheel, rendering it on the calling thread if it is not cached.
+     */
+    static Bitmap getOrRender(Context context, int radius, boolean opaque) {
+        Bitmap bitmap = get(radius, opaque);
+        if (bitmap == null) {
+            bitmap = render(radius, opaque);
+            put(context, key(radius, opaque), bitmap);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Render a wheel on a background thread and deliver it to the callback on the
+     * main thread.
+     */
+    static void renderAsync(final Context context, final int radius, final boolean opaque, final Callback callback) {
+        synchronized (ColorWheelCache.class) {
+            if (executor == null) {
+                executor = Executors.newSingleThreadExecutor();
+                mainHandler = new Handler(Looper.getMainLooper());
+            }
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Bitmap bitmap = getOrRender(context, radius, opaque);
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onColorWheelReady(radius, opaque, bitmap);
+                    }
+                });
+            }
+        });
+    }
+
+    static void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Get the size of a wheel bitmap.
+     *
+     * @return The size in bytes.
+     */
+    static int getByteCount(int radius, boolean opaque) {
+        int size = radius * 2;
+        return size * size * (opaque ? 2 : 4);
+    }
+
+    private static int key(int radius, boolean opaque) {
+        return radius * 2 + (opaque ? 1 : 0);
+    }
+
+    private static void put(Context context, int key, Bitmap bitmap) {
+        synchronized (cache) {
+            cache.put(key, bitmap);
+        }
+        synchronized (ColorWheelCache.class) {
+            if (!callbacksRegistered) {
+                callbacksRegistered = true;
+                registerCallbacks(context.getApplicationContext());
+            }
+        }
+    }
+
+    private static Bitmap render(int radius, boolean opaque) {
+
+        int size = radius * 2;
+        Bitmap bitmap = Bitmap.createBitmap(size, size, opaque ? Config.RGB_565 : Config.ARGB_8888);
+
+        Paint paint = new Paint();
+        paint.setAntiAlias(true);
+        paint.setDither(true);
+        paint.setShader(createShader(radius, radius, radius));
+
+        Canvas canvas = new Canvas(bitmap);
+        canvas.drawCircle(radius, radius, radius, paint);
+
+        return bitmap;
+
+    }
+
+    /**
+     * Create the shader which paints a wheel centered on the specified point.
+     */
+    static Shader createShader(float centerX, float centerY, int radius) {
+
+        int colorCount = 12;
+        int colorAngleStep = 360 / 12;
+        int colors[] = new int[colorCount + 1];
+        float hsv[] = new float[] { 0f, 1f, 1f };
+        for (int i = 0; i < colors.length; i++) {
+            hsv[0] = (i * colorAngleStep + 180) % 360;
+            colors[i] = Color.HSVToColor(hsv);
+        }
+        colors[colorCount] = colors[0];
+
+        SweepGradient sweepGradient = new SweepGradient(centerX, centerY, colors, null);
+        RadialGradient radialGradient = new RadialGradient(centerX, centerY, radius, 0xFFFFFFFF, 0x00FFFFFF, TileMode.CLAMP);
+        return new ComposeShader(sweepGradient, radialGradient, PorterDuff.Mode.SRC_OVER);
+
+    }
+
+    private static void registerCallbacks(Context context) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+            context.registerComponentCallbacks(new TrimCallbacks());
+        }
+    }
+
+    @TargetApi(14)
+    private static class TrimCallbacks implements ComponentCallbacks2 {
+
+        @Override
+        public void onTrimMemory(int level) {
+            if (level >= TRIM_MEMORY_RUNNING_LOW) {
+                clear();
+            }
+        }
+
+        @Override
+        public void onLowMemory() {
+            clear();
+        }
+
+        @Override
+        public void onConfigurationChanged(Configuration newConfig) {
+        }
+
+    }
+
+}
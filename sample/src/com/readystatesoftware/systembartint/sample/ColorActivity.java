@@ -43,6 +43,8 @@ public class ColorActivity extends Activity {
 
 		mColorPicker = (ColorPicker) findViewById(R.id.color_picker);
 		applySelectedColor();
+		// preview colors while they are picked
+		ColorPickerTintBinding.bind(mColorPicker, mTintManager, 153);
 
 		mButton = (Button) findViewById(R.id.button);
 		mButton.setOnClickListener(new OnClickListener() {
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2013 readyState Software Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.readystatesoftware.systembartint.sample;
+
+import android.graphics.Color;
+
+import com.chiralcode.colorpicker.ColorPicker;
+import com.readystatesoftware.systembartint.SystemBarTintManager;
+
+/**
+ * Streams the colors selected in a {@link ColorPicker} into the system bar tints
+ * of a {@link SystemBarTintManager}, for a live preview. The picker delivers at
+ * most one color per frame, and the manager ignores colors which are unchanged.
+ */
+public class ColorPickerTintBinding implements ColorPicker.OnColorChangedListener {
+
+	private final SystemBarTintManager mTintManager;
+	private final int mAlpha;
+
+	/**
+	 * Bind a picker to a tint manager.
+	 *
+	 * @param picker The color picker.
+	 * @param tintManager The manager to tint.
+	 * @param alpha The alpha applied to the picked colors, between 0 and 255.
+	 * @return The binding, which is the listener of the picker.
+	 */
+	public static ColorPickerTintBinding bind(ColorPicker picker, SystemBarTintManager tintManager, int alpha) {
+		ColorPickerTintBinding binding = new ColorPickerTintBinding(tintManager, alpha);
+		picker.setOnColorChangedListener(binding);
+		return binding;
+	}
+
+	private ColorPickerTintBinding(SystemBarTintManager tintManager, int alpha) {
+		mTintManager = tintManager;
+		mAlpha = alpha;
+	}
+
+	@Override
+	public void onColorChanged(ColorPicker picker, int color) {
+		mTintManager.setTintColor(Color.argb(mAlpha, Color.red(color), Color.green(color), Color.blue(color)));
+	}
+
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2013 Piotr Adamus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.chiralcode.colorpicker;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.util.Log;
+import android.view.MotionEvent;
+import android.view.View.MeasureSpec;
+
+public class ColorPickerTest extends AndroidTestCase {
+
+    private static final String TAG = "ColorPickerTest";
+
+    private static final int SIZE = 480;
+    private static final int FRAMES = 60;
+    private static final int BENCHMARK_ROUNDS = 20;
+
+    private ColorPicker picker;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        picker = new ColorPicker(getContext());
+        int spec = MeasureSpec.makeMeasureSpec(SIZE, MeasureSpec.EXACTLY);
+        picker.measure(spec, spec);
+        picker.layout(0, 0, SIZE, SIZE);
+    }
+
+    public void testDragDoesNotAllocatePerFrame() {
+        Bitmap bitmap = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        long time = SystemClock.uptimeMillis();
+        MotionEvent event = MotionEvent.obtain(time, time, MotionEvent.ACTION_MOVE, 0, 0, 0);
+
+        // one warm-up frame, then drag around the wheel and down the value slider
+        dragFrame(event, 0, canvas);
+        startAllocCounting();
+        for (int frame = 0; frame < FRAMES; frame++) {
+            dragFrame(event, frame, canvas);
+        }
+        int count = stopAllocCounting();
+
+        event.recycle();
+        bitmap.recycle();
+        assertEquals(0, count);
+    }
+
+    public void testLookupMatchesExactTargets() {
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                int exact = picker.computeHit(x, y) >>> 30;
+                int lookup = picker.lookupHit(x, y) >>> 30;
+                if (exact != lookup) {
+                    fail("target at " + x + "," + y + " is " + lookup + ", expected " + exact);
+                }
+            }
+        }
+    }
+
+    /**
+     * Compares table lookups with the exact math and logs the result. Timings vary
+     * with warm-up, garbage collection and throttling, so they are never asserted.
+     */
+    public void testLookupBenchmark() {
+        int[] xs = new int[SIZE * SIZE / 16];
+        int[] ys = new int[xs.length];
+        for (int i = 0; i < xs.length; i++) {
+            xs[i] = (i * 4) % SIZE;
+            ys[i] = (i * 4 / SIZE) * 4;
+        }
+
+        // warm up both paths before timing them
+        runLookups(xs, ys, 2);
+        runExact(xs, ys, 2);
+
+        long start = System.nanoTime();
+        int lookupSum = runLookups(xs, ys, BENCHMARK_ROUNDS);
+        long lookupNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        int exactSum = runExact(xs, ys, BENCHMARK_ROUNDS);
+        long exactNanos = System.nanoTime() - start;
+
+        long hits = (long) xs.length * BENCHMARK_ROUNDS;
+        Log.i(TAG, "lookup " + (lookupNanos / hits) + " ns/hit, exact " + (exactNanos / hits)
+                + " ns/hit (checksums " + lookupSum + ", " + exactSum + ")");
+    }
+
+    private void dragFrame(MotionEvent event, int frame, Canvas canvas) {
+        float angle = (float) (frame * 2 * Math.PI / FRAMES);
+        float radius = SIZE / 4f;
+        event.setLocation(SIZE / 2 + radius * (float) Math.cos(angle), SIZE / 2 + radius * (float) Math.sin(angle));
+        picker.onTouchEvent(event);
+        picker.draw(canvas);
+
+        event.setLocation(SIZE - 2, SIZE / 2 + (frame - FRAMES / 2) * 2);
+        picker.onTouchEvent(event);
+        picker.draw(canvas);
+    }
+
+    private int runLookups(int[] xs, int[] ys, int rounds) {
+        int sum = 0;
+        for (int round = 0; round < rounds; round++) {
+            for (int i = 0; i < xs.length; i++) {
+                sum += picker.lookupHit(xs[i], ys[i]);
+            }
+        }
+        return sum;
+    }
+
+    private int runExact(int[] xs, int[] ys, int rounds) {
+        int sum = 0;
+        for (int round = 0; round < rounds; round++) {
+            for (int i = 0; i < xs.length; i++) {
+                sum += picker.computeHit(xs[i], ys[i]);
+            }
+        }
+        return sum;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static void startAllocCounting() {
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+    }
+
+    @SuppressWarnings("deprecation")
+    private static int stopAllocCounting() {
+        Debug.stopAllocCounting();
+        return Debug.getThreadAllocCount();
+    }
+
+}